@@ -17,7 +17,6 @@ import java.util.*;
 
 public class Executer {
 
-	private static final int THREADS = 20;
 	private static final int SUBMISSION = 10; // Submission Number.
 	private static final int PLAGIARISM_CLUSTER_MINIMUM_SIZE = 5; // This many students (or more) to warn of plagiarism.
 	private static final String ROOT = System.getProperty("user.dir") + File.separator + "submissions";
@@ -54,7 +53,7 @@ public class Executer {
 				PARENT, 								// Folder containing student submissions.
 				"Submission " + SUBMISSION, 			// Description.
 				getTester()								// Tester class.
-		).run(THREADS);
+		).run();										// Adapts the number of threads to the machine.
 		System.out.println();
 
 		plagiarism(report);								// Write plagiarism report and print clusters to console.
@@ -92,7 +91,7 @@ public class Executer {
 			String name = submission.getDirectory().getName().split("_")[0];
 
 			Submission sub = new Submission(submission.getDirectory(), name, id, submission.getExpectedFiles());
-			return new Report.Entry(sub, entry.getResults(), entry.getGrade());
+			return new Report.Entry(sub, entry.getResults(), entry.getGrade(), entry.getUsage(), entry.getElapsedMillis());
 		}).sorted(Comparator.comparing(o -> o.getSubmission().getName())).toList();
 
 		String name = "Report - Submission " + SUBMISSION;
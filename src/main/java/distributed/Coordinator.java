@@ -0,0 +1,481 @@
+package distributed;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import evaluator.CostEstimator;
+import evaluator.Journal;
+import evaluator.Manifest;
+import evaluator.Report;
+import evaluator.Submission;
+import evaluator.Tester;
+import evaluator.annotations.Test;
+import evaluator.messages.Result;
+import extensions.Console;
+import extensions.Files;
+import extensions.ProgressBar;
+import loading.ClassFiles;
+import reflection.Reflector;
+import reflection.ResourceQuota;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates a batch of submissions across several {@link Worker} processes, possibly on other machines. Workers
+ * connect to the coordinator, receive the tester class and then one submission at a time, and send back its report
+ * entry, which the coordinator merges into a single {@link Report}.
+ * <p>
+ * Submissions handed to a worker that disconnects, or that doesn't answer within the submission timeout, are
+ * re-queued for another worker. If no worker is connected for longer than the worker timeout, the submissions left
+ * are reported as failures instead of waiting forever. Plagiarism analysis isn't run by the coordinator.
+ * <p>
+ * Workers evaluate submissions with the same settings as a {@link evaluator.FullEvaluator} configured alike: the
+ * invocation mode, test parallelism and reference implementation are sent to them, and the results a manifest lets
+ * the coordinator reuse are sent along with each submission.
+ * <p>
+ * By default, the coordinator only listens on the loopback interface. Workers must know the coordinator's shared
+ * secret to connect (see {@link Protocol}); the connection itself is not encrypted, so only bind it to other
+ * interfaces on a trusted network.
+ *
+ * @author Afonso Caniço
+ */
+public class Coordinator<T extends Tester> {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final long GRACE_MILLIS = 30_000L; // Time for the worker to report a timed-out submission
+
+    private static final Gson GSON = new Gson();
+
+    private final String root;
+
+    private final String description;
+
+    private final Class<T> tester;
+
+    private final List<String> expected;
+
+    private final int port;
+
+    private InetAddress bindAddress = InetAddress.getLoopbackAddress();
+
+    private String secret;
+
+    private long workerTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+
+    private long submissionTimeout = 5L;
+
+    private TimeUnit submissionTimeoutUnit = TimeUnit.MINUTES;
+
+    private ResourceQuota quota = ResourceQuota.UNLIMITED;
+
+    private Reflector.InvocationMode invocationMode = Reflector.InvocationMode.HANDOFF;
+
+    private int testParallelism = 1;
+
+    private File referenceCodeFolder;
+
+    private boolean oracle;
+
+    private File manifestFile;
+
+    private Consumer<Report.Entry> listener;
+
+    private Report history;
+
+    private final BlockingDeque<Submission> queue = new LinkedBlockingDeque<>();
+
+    private final Map<Submission, Integer> attempts = new ConcurrentHashMap<>();
+
+    private final List<Report.Entry> entries = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicLong jobs = new AtomicLong();
+
+    private final AtomicInteger connected = new AtomicInteger();
+
+    private CountDownLatch remaining;
+
+    private ProgressBar progress;
+
+    private Map<String, byte[]> testerClasses;
+
+    private byte[] referenceFiles;
+
+    private final Map<Submission, Report.Entry> reusedTests = new ConcurrentHashMap<>(); // Partial results of a previous run
+
+    /**
+     * @param root Folder containing every submission's folder.
+     * @param description The evaluation's description.
+     * @param tester The {@link Tester} class to evaluate submissions with.
+     * @param port The port workers connect to.
+     */
+    public Coordinator(String root, String description, Class<T> tester, int port) {
+        this.root = root;
+        this.description = description;
+        this.tester = tester;
+        this.port = port;
+        this.expected = Tester.getAllRequiredFiles(tester).stream().toList();
+    }
+
+    /**
+     * Sets the address to listen for workers on. Defaults to the loopback address, so only workers on the same
+     * machine can connect.
+     */
+    public Coordinator<T> withBindAddress(InetAddress address) {
+        this.bindAddress = address;
+        return this;
+    }
+
+    /**
+     * Sets the secret workers must know to connect. If none is set, a random one is generated and printed when the
+     * coordinator starts.
+     */
+    public Coordinator<T> withSecret(String secret) {
+        this.secret = secret;
+        return this;
+    }
+
+    /**
+     * Sets how long to wait while no worker is connected before giving up on the submissions left. Defaults to 10
+     * minutes.
+     */
+    public Coordinator<T> withWorkerTimeout(long timeout, TimeUnit unit) {
+        this.workerTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Sets the maximum time a worker may take to evaluate a single submission. See also:
+     * {@link evaluator.FullEvaluator#withSubmissionTimeout(long, TimeUnit)}.
+     */
+    public Coordinator<T> withSubmissionTimeout(long timeout, TimeUnit unit) {
+        this.submissionTimeout = timeout;
+        this.submissionTimeoutUnit = unit;
+        return this;
+    }
+
+    /**
+     * Limits the resources each submission's code may consume on its worker. See also:
+     * {@link evaluator.FullEvaluator#withQuota(ResourceQuota)}.
+     */
+    public Coordinator<T> withQuota(ResourceQuota quota) {
+        this.quota = quota;
+        return this;
+    }
+
+    /**
+     * Sets how testers invoke the submissions' code on the workers. See also:
+     * {@link evaluator.FullEvaluator#withInvocationMode(Reflector.InvocationMode)}.
+     */
+    public Coordinator<T> withInvocationMode(Reflector.InvocationMode mode) {
+        this.invocationMode = mode;
+        return this;
+    }
+
+    /**
+     * Runs up to the given number of each submission's tests at the same time on the workers. See also:
+     * {@link evaluator.FullEvaluator#withTestParallelism(int)}.
+     */
+    public Coordinator<T> withTestParallelism(int parallelism) {
+        this.testParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the reference implementation. See also: {@link #withOracle()}.
+     * @param folder Folder containing the reference implementation's source code files.
+     */
+    public Coordinator<T> withReference(File folder) {
+        this.referenceCodeFolder = folder;
+        return this;
+    }
+
+    /**
+     * Lets testers compute expected results from the reference implementation, which is sent to every worker. Each
+     * worker connection keeps its own expected results, which aren't persisted. See also:
+     * {@link evaluator.FullEvaluator#withOracle()}.
+     */
+    public Coordinator<T> withOracle() {
+        if (referenceCodeFolder == null)
+            throw new IllegalStateException("Set the reference implementation with withReference before enabling the oracle.");
+        this.oracle = true;
+        return this;
+    }
+
+    /**
+     * Reuses the previous run's results for submissions and tests that didn't change since, handing out only the
+     * rest. The manifest is updated after each run. See also: {@link evaluator.FullEvaluator#withManifest(File)}.
+     * @param file The manifest file. See also: {@link Manifest}.
+     */
+    public Coordinator<T> withManifest(File file) {
+        this.manifestFile = file;
+        return this;
+    }
+
+    /**
+     * Hands out the submissions expected to take longest first. See also:
+     * {@link evaluator.FullEvaluator#withHistory(Report)}.
+     */
+    public Coordinator<T> withHistory(Report previous) {
+        this.history = previous;
+        return this;
+    }
+
+    /**
+     * Sets a listener that is notified of each submission's report entry as soon as a worker sends it back.
+     * Entries are delivered on the thread serving that worker.
+     */
+    public Coordinator<T> withListener(Consumer<Report.Entry> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Waits for workers to connect and hands out every submission in the root folder, until all are evaluated or no
+     * worker has been connected for longer than the worker timeout.
+     * @return The report of all submissions.
+     */
+    public Report run() throws IOException, InterruptedException {
+        if (secret == null) {
+            secret = Protocol.secret();
+            System.out.println("Workers must set AEDEVAL_SECRET=" + secret);
+        }
+        testerClasses = ClassFiles.read(tester, Tester.class); // Workers may not have the tester on their classpath
+        referenceFiles = oracle ? Files.zip(referenceCodeFolder) : null;
+
+        List<Submission> submissions = new ArrayList<>();
+        File[] directories = new File(root).listFiles(File::isDirectory);
+        if (directories != null) {
+            for (File directory : directories)
+                submissions.add(new Submission(directory, expected));
+        }
+
+        // Reuse the previous run's results for submissions that didn't change since
+        Manifest manifest = manifestFile != null ? new Manifest(manifestFile, tester) : null;
+        Map<File, String> contentHashes = new HashMap<>();
+        List<Report.Entry> reused = new ArrayList<>();
+        reusedTests.clear();
+        if (manifest != null) {
+            Iterator<Submission> it = submissions.iterator();
+            while (it.hasNext()) {
+                Submission submission = it.next();
+                String contentHash = Manifest.getContentHash(submission);
+                contentHashes.put(submission.getDirectory(), contentHash);
+                Report.Entry entry = manifest.reuse(submission, contentHash);
+                if (entry != null) {
+                    reused.add(entry);
+                    it.remove();
+                } else {
+                    // Only run the tests that changed
+                    Report.Entry partial = manifest.reuseTests(submission, contentHash);
+                    if (partial != null)
+                        reusedTests.put(submission, partial);
+                }
+            }
+        }
+        entries.addAll(reused);
+
+        CostEstimator estimator = new CostEstimator(history);
+        Map<Submission, Double> estimates = new HashMap<>();
+        for (Submission submission : submissions)
+            estimates.put(submission, estimator.estimate(submission));
+        submissions.sort(Comparator.comparing(estimates::get, Comparator.reverseOrder()));
+        queue.addAll(submissions);
+
+        remaining = new CountDownLatch(submissions.size());
+        progress = new ProgressBar(submissions.size(), 175, "[" + description + "] Evaluating...");
+
+        long start = System.currentTimeMillis();
+        try (ServerSocket server = new ServerSocket(port, 50, bindAddress)) {
+            System.out.println("Waiting for workers on " + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort() + "...");
+            Thread acceptor = new Thread(() -> accept(server), "coordinator");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            long idleSince = System.currentTimeMillis();
+            while (!remaining.await(1, TimeUnit.SECONDS)) {
+                long now = System.currentTimeMillis();
+                if (connected.get() > 0)
+                    idleSince = now;
+                else if (now - idleSince > workerTimeoutMillis) {
+                    abandon();
+                    idleSince = now;
+                }
+            }
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("Done! Elapsed time: " + ((end - start) / 1000.0) + " seconds");
+
+        Report report = new Report(description, entries);
+        if (manifest != null) {
+            manifest.write(report, contentHashes);
+            System.out.println("Skipped " + reused.size() + " unchanged submission(s), handed out " + submissions.size() + " new or changed submission(s).");
+        }
+        return report;
+    }
+
+    private void accept(ServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serve(socket), "coordinator-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (SocketException e) {
+                return; // Closed once every submission is evaluated
+            } catch (IOException e) {
+                Console.warning("Could not accept worker connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hands out submissions to a single worker connection, until none are left or the worker is lost.
+     * @param socket The worker's connection.
+     */
+    private void serve(Socket socket) {
+        String worker = String.valueOf(socket.getRemoteSocketAddress());
+        Journal codec = new Journal(null, tester);
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            // Handshake, bounded so that an idle or hostile connection can't hold this thread
+            socket.setSoTimeout(Protocol.HANDSHAKE_TIMEOUT_MILLIS);
+            Protocol.expect(in.readByte(), Protocol.HELLO);
+            int version = in.readInt();
+            if (version != Protocol.VERSION)
+                throw new IOException("Unsupported protocol version " + version);
+            worker = new String(Protocol.readBytes(in, Protocol.MAX_HANDSHAKE_BYTES), StandardCharsets.UTF_8) + " (" + worker + ")";
+            byte[] challenge = Protocol.challenge();
+            out.writeByte(Protocol.CHALLENGE);
+            Protocol.writeBytes(out, Protocol.answer(secret, Protocol.readBytes(in, Protocol.MAX_HANDSHAKE_BYTES)));
+            Protocol.writeBytes(out, challenge);
+            out.flush();
+            Protocol.expect(in.readByte(), Protocol.AUTH);
+            Protocol.verify(secret, challenge, Protocol.readBytes(in, Protocol.MAX_HANDSHAKE_BYTES));
+
+            out.writeByte(Protocol.CONFIG);
+            Protocol.writeString(out, tester.getName());
+            out.writeInt(testerClasses.size());
+            for (Map.Entry<String, byte[]> type : testerClasses.entrySet()) {
+                Protocol.writeString(out, type.getKey());
+                Protocol.writeBytes(out, type.getValue());
+            }
+            out.writeLong(submissionTimeout);
+            Protocol.writeString(out, submissionTimeoutUnit.name());
+            Protocol.writeQuota(out, quota);
+            Protocol.writeString(out, invocationMode.name());
+            out.writeInt(testParallelism);
+            out.writeBoolean(referenceFiles != null);
+            if (referenceFiles != null) {
+                Protocol.writeString(out, referenceCodeFolder.getName());
+                Protocol.writeBytes(out, referenceFiles);
+            }
+            out.flush();
+
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, submissionTimeoutUnit.toMillis(submissionTimeout) + GRACE_MILLIS));
+            connected.incrementAndGet();
+            try {
+                work(worker, codec, in, out);
+            } finally {
+                connected.decrementAndGet();
+            }
+        } catch (IOException e) {
+            Console.warning("Lost worker " + worker + ": " + describe(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands out submissions over an authenticated and configured worker connection, until none are left.
+     */
+    private void work(String worker, Journal codec, DataInputStream in, DataOutputStream out) throws IOException, InterruptedException {
+        while (remaining.getCount() > 0) {
+            Submission submission = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (submission == null)
+                continue;
+
+            byte[] files;
+            try {
+                files = Files.zip(submission.getDirectory());
+            } catch (IOException e) {
+                record(failure(submission, "Could not read submission files: " + e.getMessage()));
+                continue;
+            }
+
+            try {
+                long job = jobs.incrementAndGet();
+                out.writeByte(Protocol.JOB);
+                out.writeLong(job);
+                Protocol.writeString(out, submission.getName());
+                out.writeLong(submission.getID());
+                Protocol.writeString(out, submission.getDirectory().getName());
+                Protocol.writeStrings(out, submission.getExpectedFiles());
+                Protocol.writeBytes(out, files);
+                Report.Entry partial = reusedTests.get(submission);
+                Protocol.writeString(out, partial != null ? GSON.toJson(codec.toJson(partial)) : "");
+                out.flush();
+
+                Protocol.expect(in.readByte(), Protocol.RESULT);
+                if (in.readLong() != job)
+                    throw new IOException("Worker answered the wrong job");
+                record(codec.fromJson(JsonParser.parseString(Protocol.readString(in)).getAsJsonObject(), submission));
+            } catch (IOException | RuntimeException e) {
+                requeue(submission, worker, e);
+                throw e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+            }
+        }
+
+        out.writeByte(Protocol.BYE);
+        out.flush();
+    }
+
+    /**
+     * Hands a submission whose worker was lost to another worker, unless it has already failed too many times.
+     */
+    private void requeue(Submission submission, String worker, Exception cause) {
+        int attempt = attempts.merge(submission, 1, Integer::sum);
+        if (attempt >= MAX_ATTEMPTS)
+            record(failure(submission, "Could not evaluate submission: " + attempt + " workers were lost while evaluating it (last: " + worker + ", " + describe(cause) + ")."));
+        else queue.offerFirst(submission);
+    }
+
+    /**
+     * Reports every submission still queued as a failure, once no worker has been connected for too long.
+     */
+    private void abandon() {
+        Console.warning("No worker connected for " + (workerTimeoutMillis / 1000) + " seconds, giving up on the remaining submissions");
+        for (Submission submission; (submission = queue.poll()) != null; )
+            record(failure(submission, "Could not evaluate submission: no worker was available."));
+    }
+
+    private void record(Report.Entry entry) {
+        entries.add(entry);
+        if (listener != null)
+            listener.accept(entry);
+        progress.step();
+        remaining.countDown();
+    }
+
+    private static String describe(Exception e) {
+        if (e instanceof EOFException)
+            return "connection closed";
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static Report.Entry failure(Submission submission, String message) {
+        Map<Test, List<Result>> results = new HashMap<>();
+        results.put(null, new ArrayList<>(List.of(Result.evaluationError(null, message))));
+        return new Report.Entry(submission, results, 0.0, new HashMap<>(), 0L);
+    }
+}
@@ -0,0 +1,165 @@
+package distributed;
+
+import reflection.ResourceQuota;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wire format shared by the {@link Coordinator} and its {@link Worker}s. Every message starts with a one byte type,
+ * followed by its fields, written with {@link DataOutputStream}. Strings and byte arrays are length-prefixed.
+ * <ul>
+ *     <li>Worker → coordinator: {@link #HELLO} (version, worker name, challenge), {@link #AUTH} (answer), then one
+ *     {@link #RESULT} per job.</li>
+ *     <li>Coordinator → worker: {@link #CHALLENGE} (answer, challenge), {@link #CONFIG} (tester class bytes, submission
+ *     timeout, quota, invocation mode, test parallelism, optionally the zipped reference implementation), then
+ *     {@link #JOB}s (submission files, reused results) until {@link #BYE}.</li>
+ * </ul>
+ * Both sides prove they know the shared secret by answering the other's random challenge with its HMAC (see
+ * {@link #answer(String, byte[])}), so the secret itself is never sent. Messages are not encrypted.
+ * <p>
+ * Results, and the partial results of a previous run to reuse (empty if none), are report entries encoded as in the
+ * evaluation {@link evaluator.Journal}.
+ *
+ * @author Afonso Caniço
+ */
+final class Protocol {
+
+    static final int VERSION = 3;
+
+    static final byte HELLO = 1;
+
+    static final byte CONFIG = 2;
+
+    static final byte JOB = 3;
+
+    static final byte RESULT = 4;
+
+    static final byte BYE = 5;
+
+    static final byte CHALLENGE = 6;
+
+    static final byte AUTH = 7;
+
+    static final int HANDSHAKE_TIMEOUT_MILLIS = 30_000;
+
+    static final int MAX_HANDSHAKE_BYTES = 1024;
+
+    private static final int CHALLENGE_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private Protocol() { }
+
+    /**
+     * @return A new random challenge.
+     */
+    static byte[] challenge() {
+        byte[] challenge = new byte[CHALLENGE_BYTES];
+        RANDOM.nextBytes(challenge);
+        return challenge;
+    }
+
+    /**
+     * The answer to a challenge, which only someone who knows the secret can compute.
+     * @param secret The shared secret.
+     * @param challenge The challenge.
+     * @return The HMAC-SHA256 of the challenge, keyed by the secret.
+     */
+    static byte[] answer(String secret, byte[] challenge) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac.doFinal(challenge);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Checks the answer to a challenge, in constant time.
+     * @throws IOException If the answer is wrong, i.e. the other side doesn't know the secret.
+     */
+    static void verify(String secret, byte[] challenge, byte[] answer) throws IOException {
+        if (!MessageDigest.isEqual(answer(secret, challenge), answer))
+            throw new IOException("Authentication failed: wrong shared secret");
+    }
+
+    /**
+     * Generates a random secret, e.g. when none was configured.
+     */
+    static String secret() {
+        return HexFormat.of().formatHex(challenge());
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        return readBytes(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a value of bounded length, e.g. before the other side is authenticated.
+     */
+    static byte[] readBytes(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength)
+            throw new IOException("Invalid message length: " + length);
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values)
+            writeString(out, value);
+    }
+
+    static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            values.add(readString(in));
+        return values;
+    }
+
+    static void writeQuota(DataOutputStream out, ResourceQuota quota) throws IOException {
+        out.writeLong(quota.getAllocatedBytes());
+        out.writeLong(quota.getCpuTime());
+        out.writeInt(quota.getThreads());
+    }
+
+    static ResourceQuota readQuota(DataInputStream in) throws IOException {
+        long allocatedBytes = in.readLong();
+        long cpuTime = in.readLong();
+        int threads = in.readInt();
+        return ResourceQuota.UNLIMITED
+                .withAllocatedBytes(allocatedBytes)
+                .withCpuTime(cpuTime, TimeUnit.NANOSECONDS)
+                .withThreads(threads);
+    }
+
+    static void expect(byte actual, byte expected) throws IOException {
+        if (actual != expected)
+            throw new IOException("Unexpected message type " + actual + " (expected " + expected + ")");
+    }
+}
@@ -0,0 +1,263 @@
+package distributed;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import evaluator.Generator;
+import evaluator.Journal;
+import evaluator.Oracle;
+import evaluator.Report;
+import evaluator.Runnable;
+import evaluator.Submission;
+import evaluator.Tester;
+import evaluator.annotations.Test;
+import evaluator.messages.Result;
+import evaluator.messages.SubmissionTimeoutError;
+import extensions.Console;
+import extensions.Files;
+import loading.ClassLoader;
+import reflection.Reflector;
+import reflection.ResourceQuota;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Evaluates submissions on behalf of a {@link Coordinator}. The coordinator ships the tester class, its evaluation
+ * settings and the reference implementation along with each submission's files, so workers only need AEDeval itself
+ * on their classpath. Each connection evaluates one
+ * submission at a time; a worker opens as many connections as it has evaluation threads.
+ * <p>
+ * Usage: <code>java distributed.Worker &lt;host&gt; &lt;port&gt; [threads]</code>, with the coordinator's shared secret
+ * in the <code>AEDEVAL_SECRET</code> environment variable.
+ *
+ * @author Afonso Caniço
+ */
+public class Worker {
+
+    private static final Gson GSON = new Gson();
+
+    private final String host;
+
+    private final int port;
+
+    private final String secret;
+
+    private final String name;
+
+    /**
+     * @param host The coordinator's host.
+     * @param port The coordinator's port.
+     * @param secret The coordinator's shared secret.
+     */
+    public Worker(String host, int port, String secret) {
+        this.host = host;
+        this.port = port;
+        this.secret = secret;
+        this.name = getHostName() + "/" + ProcessHandle.current().pid();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: java distributed.Worker <host> <port> [threads]");
+            System.exit(1);
+        }
+        String secret = System.getenv("AEDEVAL_SECRET");
+        if (secret == null || secret.isEmpty()) {
+            System.err.println("Set AEDEVAL_SECRET to the coordinator's shared secret");
+            System.exit(1);
+        }
+        Worker worker = new Worker(args[0], Integer.parseInt(args[1]), secret);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        List<Thread> connections = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread connection = new Thread(worker::work, "worker-" + i);
+            connection.start();
+            connections.add(connection);
+        }
+        for (Thread connection : connections)
+            connection.join();
+        try {
+            ClassLoader.flush();
+        } catch (IOException ignored) { }
+        System.exit(0);
+    }
+
+    /**
+     * Connects to the coordinator and evaluates the submissions it hands out, until it has none left.
+     */
+    public void work() {
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            // Handshake: each side answers the other's challenge
+            byte[] challenge = Protocol.challenge();
+            out.writeByte(Protocol.HELLO);
+            out.writeInt(Protocol.VERSION);
+            Protocol.writeString(out, name);
+            Protocol.writeBytes(out, challenge);
+            out.flush();
+            Protocol.expect(in.readByte(), Protocol.CHALLENGE);
+            Protocol.verify(secret, challenge, Protocol.readBytes(in, Protocol.MAX_HANDSHAKE_BYTES));
+            byte[] answer = Protocol.answer(secret, Protocol.readBytes(in, Protocol.MAX_HANDSHAKE_BYTES));
+            out.writeByte(Protocol.AUTH);
+            Protocol.writeBytes(out, answer);
+            out.flush();
+
+            // Evaluation settings
+            Protocol.expect(in.readByte(), Protocol.CONFIG);
+            Class<? extends Tester> tester = loadTester(in);
+            long timeout = in.readLong();
+            TimeUnit unit = TimeUnit.valueOf(Protocol.readString(in));
+            ResourceQuota quota = Protocol.readQuota(in);
+            Reflector.InvocationMode invocationMode = Reflector.InvocationMode.valueOf(Protocol.readString(in));
+            int testParallelism = in.readInt();
+            File reference = null;
+            if (in.readBoolean()) {
+                String referenceName = Protocol.readString(in);
+                reference = new File(java.nio.file.Files.createTempDirectory("aedeval-").toFile(), referenceName);
+                Files.unzip(Protocol.readBytes(in), reference);
+            }
+            Oracle oracle = reference != null ? new Oracle(reference) : null;
+            Journal codec = new Journal(null, tester);
+
+            ExecutorService executor = Executors.newSingleThreadExecutor(Worker::daemon);
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    if (type == Protocol.BYE)
+                        break;
+                    Protocol.expect(type, Protocol.JOB);
+
+                    long job = in.readLong();
+                    String submissionName = Protocol.readString(in);
+                    long id = in.readLong();
+                    String directoryName = Protocol.readString(in);
+                    List<String> expected = Protocol.readStrings(in);
+                    byte[] files = Protocol.readBytes(in);
+                    String reused = Protocol.readString(in);
+
+                    File temp = java.nio.file.Files.createTempDirectory("aedeval-").toFile();
+                    try {
+                        File directory = new File(temp, directoryName);
+                        Files.unzip(files, directory);
+                        Submission submission = new Submission(directory, submissionName, id, expected);
+
+                        Runnable task = new Runnable(submission, tester, null, quota, testParallelism);
+                        task.setOracle(oracle);
+                        task.setInvocationMode(invocationMode);
+                        if (!reused.isEmpty())
+                            task.reuse(codec.fromJson(JsonParser.parseString(reused).getAsJsonObject(), submission));
+                        Future<Tester> future = executor.submit(task);
+                        Report.Entry entry = evaluate(future, task, timeout, unit);
+                        if (future.isCancelled()) { // The evaluating thread may never stop, so don't reuse it
+                            executor.shutdownNow();
+                            executor = Executors.newSingleThreadExecutor(Worker::daemon);
+                        }
+
+                        out.writeByte(Protocol.RESULT);
+                        out.writeLong(job);
+                        Protocol.writeString(out, GSON.toJson(codec.toJson(entry)));
+                        out.flush();
+                    } finally {
+                        if (!Files.delete(temp))
+                            temp.deleteOnExit();
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+                Generator.release(tester); // The next connection loads the tester again
+                if (reference != null && !Files.delete(reference.getParentFile()))
+                    reference.getParentFile().deleteOnExit();
+            }
+        } catch (EOFException e) {
+            // The coordinator finished without needing this connection
+        } catch (IOException e) {
+            Console.error("Worker " + name + " lost its connection to " + host + ":" + port + ": " + e.getMessage());
+        }
+    }
+
+    private static Report.Entry evaluate(Future<Tester> future, Runnable task, long timeout, TimeUnit unit) {
+        Map<Test, List<Result>> results = new HashMap<>();
+        try {
+            Tester test = future.get(timeout, unit);
+            if (test != null)
+                return new Report.Entry(task.getSubmission(), test.getResults(), test.grade(), test.getUsage(), task.getElapsedMillis());
+            results.put(null, new ArrayList<>(List.of(Result.evaluationError(null, "Could not evaluate submission: the tester could not be run."))));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            results.put(null, new ArrayList<>(List.of(new SubmissionTimeoutError(timeout, unit))));
+        } catch (ExecutionException e) {
+            results.put(null, new ArrayList<>(List.of(Result.exception(null, e.getCause()))));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.put(null, new ArrayList<>(List.of(Result.evaluationError(null, "Could not evaluate submission: the evaluation was interrupted."))));
+        }
+        return new Report.Entry(task.getSubmission(), results, 0.0, new HashMap<>(), task.getElapsedMillis());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Tester> loadTester(DataInputStream in) throws IOException {
+        String testerName = Protocol.readString(in);
+        Map<String, byte[]> classes = new HashMap<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+            classes.put(Protocol.readString(in), Protocol.readBytes(in));
+
+        try {
+            Class<?> type = Class.forName(testerName, true, new TesterClassLoader(classes));
+            if (Tester.class.isAssignableFrom(type))
+                return (Class<? extends Tester>) type;
+            throw new IOException("Not a tester class: " + testerName);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IOException("Could not load tester class " + testerName + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Thread daemon(java.lang.Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "worker";
+        }
+    }
+
+    /**
+     * Defines the tester classes received from the coordinator, taking precedence over any class of the same name
+     * on the worker's classpath.
+     */
+    private static class TesterClassLoader extends java.lang.ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        TesterClassLoader(Map<String, byte[]> classes) {
+            super(Worker.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> type = findLoadedClass(name);
+                if (type == null && classes.containsKey(name)) {
+                    byte[] bytes = classes.get(name);
+                    type = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (type == null)
+                    return super.loadClass(name, resolve);
+                if (resolve)
+                    resolveClass(type);
+                return type;
+            }
+        }
+    }
+}
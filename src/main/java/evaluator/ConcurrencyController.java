@@ -0,0 +1,159 @@
+package evaluator;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Decides how many submissions are evaluated at the same time. A fixed controller always allows the same number;
+ * an adaptive one starts from the number of available processors and adjusts to what the machine can take:
+ * <ul>
+ *     <li>It backs off (halving the limit) when the heap is nearly full or the JVM spends too much time collecting
+ *     garbage, e.g. while memory-hungry submissions run;</li>
+ *     <li>It admits one more submission at a time while every allowed submission is running and the processors
+ *     aren't saturated, e.g. when submissions spend their time sleeping or blocked.</li>
+ * </ul>
+ *
+ * @author Afonso Caniço
+ */
+public class ConcurrencyController {
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 500L;
+
+    private static final double MAX_HEAP_USAGE = 0.85; // Of the maximum heap size
+
+    private static final double MAX_GC_TIME = 0.10; // Fraction of wall time spent collecting garbage
+
+    private static final double MAX_CPU_LOAD = 0.90;
+
+    private final int minimum;
+
+    private final int maximum;
+
+    private final boolean adaptive;
+
+    private int limit;
+
+    private int peak;
+
+    private long lastSample = System.nanoTime();
+
+    private long lastGcMillis = getGcMillis();
+
+    private ConcurrencyController(int initial, int minimum, int maximum, boolean adaptive) {
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.adaptive = adaptive;
+        this.limit = initial;
+        this.peak = initial;
+    }
+
+    /**
+     * Always allows the same number of submissions at the same time.
+     * @param threads The number of submissions.
+     */
+    public static ConcurrencyController fixed(int threads) {
+        return new ConcurrencyController(threads, threads, threads, false);
+    }
+
+    /**
+     * Starts from the number of available processors, allowing up to four times as many submissions.
+     */
+    public static ConcurrencyController adaptive() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return adaptive(processors, 1, 4 * processors);
+    }
+
+    /**
+     * @param initial The number of submissions allowed at first.
+     * @param minimum The least number of submissions allowed, even under memory pressure.
+     * @param maximum The most submissions allowed.
+     */
+    public static ConcurrencyController adaptive(int initial, int minimum, int maximum) {
+        return new ConcurrencyController(Math.clamp(initial, minimum, maximum), minimum, maximum, true);
+    }
+
+    /**
+     * How many submissions may be evaluated at the same time right now?
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * The most submissions that may ever be evaluated at the same time, e.g. to size thread pools.
+     */
+    public int getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * The most submissions allowed at the same time so far.
+     */
+    public synchronized int getPeak() {
+        return peak;
+    }
+
+    /**
+     * Adjusts the limit to the current CPU load, garbage collection time and heap usage. Samples taken less than
+     * half a second apart are ignored.
+     * @param running The number of submissions being evaluated.
+     * @return The (possibly new) limit.
+     */
+    public synchronized int sample(int running) {
+        long now = System.nanoTime();
+        long elapsedMillis = (now - lastSample) / 1_000_000L;
+        if (!adaptive || elapsedMillis < SAMPLE_INTERVAL_MILLIS)
+            return limit;
+
+        long gcMillis = getGcMillis();
+        double gcTime = (double) (gcMillis - lastGcMillis) / elapsedMillis;
+        lastSample = now;
+        lastGcMillis = gcMillis;
+
+        if (getHeapUsage() > MAX_HEAP_USAGE || gcTime > MAX_GC_TIME)
+            limit = Math.max(minimum, limit / 2);
+        else if (running >= limit && getCpuLoad() < MAX_CPU_LOAD)
+            limit = Math.min(maximum, limit + 1);
+        peak = Math.max(peak, limit);
+        return limit;
+    }
+
+    /**
+     * @return The fraction of the heap still in use after the last garbage collection, i.e. the live data, since the
+     * heap in use at any moment includes garbage not yet collected.
+     */
+    private static double getHeapUsage() {
+        long used = 0L;
+        boolean measured = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage collected = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (collected != null) {
+                used += collected.getUsed();
+                measured = true;
+            }
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        if (!measured)
+            used = heap.getUsed();
+        return heap.getMax() > 0L ? (double) used / heap.getMax() : 0.0;
+    }
+
+    private static long getGcMillis() {
+        long total = 0L;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0L, collector.getCollectionTime());
+        return total;
+    }
+
+    /**
+     * @return The recent CPU load of the whole machine, between 0 and 1, or 0 if unavailable.
+     */
+    private static double getCpuLoad() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os)
+            return Math.max(0.0, os.getCpuLoad());
+        return 0.0;
+    }
+}
@@ -0,0 +1,77 @@
+package evaluator;
+
+import extensions.Files;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cheaply predicts how long evaluating a submission will take, so that the most expensive submissions can be
+ * scheduled first (longest processing time first). Uses the evaluation time of the same submission in a previous
+ * run when available, and the size of the submission's source code files otherwise.
+ *
+ * @author Afonso Caniço
+ */
+public class CostEstimator {
+
+    private final Map<String, Long> history = new HashMap<>(); // Submission name -> elapsed milliseconds
+
+    private double millisecondsPerByte = 1.0;
+
+    public CostEstimator() { }
+
+    /**
+     * Creates an estimator that uses the evaluation times recorded in a previous report.
+     * @param previous A report from a previous run. Can be null.
+     */
+    public CostEstimator(Report previous) {
+        if (previous == null)
+            return;
+
+        long totalMillis = 0L;
+        long totalBytes = 0L;
+        for (Report.Entry entry : previous) {
+            if (entry.getElapsedMillis() <= 0L)
+                continue;
+            history.put(entry.getSubmission().getName(), entry.getElapsedMillis());
+            totalMillis += entry.getElapsedMillis();
+            totalBytes += getSourceSize(entry.getSubmission());
+        }
+
+        // Put size-based estimates on the same scale as the recorded times
+        if (totalMillis > 0L && totalBytes > 0L)
+            millisecondsPerByte = (double) totalMillis / totalBytes;
+    }
+
+    /**
+     * Estimates the cost of evaluating a submission.
+     * @param submission The submission.
+     * @return The estimated cost. Only meaningful relative to the estimates of other submissions.
+     */
+    public double estimate(Submission submission) {
+        Long elapsed = history.get(submission.getName());
+        if (elapsed != null)
+            return elapsed;
+        return getSourceSize(submission) * millisecondsPerByte;
+    }
+
+    /**
+     * Total size of the submission's Java source code files.
+     * @param submission The submission.
+     * @return The total size, in bytes.
+     */
+    public static long getSourceSize(Submission submission) {
+        File directory = submission.getDirectory();
+        if (directory == null || !directory.isDirectory())
+            return 0L;
+
+        long size = 0L;
+        for (File file : Files.walk(directory)) {
+            if (file.isFile() && FilenameUtils.getExtension(file.getName()).equals("java"))
+                size += file.length();
+        }
+        return size;
+    }
+}
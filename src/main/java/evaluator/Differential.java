@@ -0,0 +1,403 @@
+package evaluator;
+
+import evaluator.messages.DifferentialResult;
+import extensions.Extensions;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Differential testing of a class against a reference implementation of the same interface. Random sequences of
+ * operations (calls to the interface's methods) are replayed in lockstep on a reference instance and on an instance
+ * of the tested class; the first operation whose outcome differs (return value or exception type) is a divergence.
+ * A diverging sequence is shrunk to a minimal reproduction before it's logged as a {@link DifferentialResult}.
+ * <p>
+ * The tested class doesn't need to implement the interface: methods are matched by name and parameter types, so
+ * e.g. a student's <code>Queue&lt;T&gt;</code> can be tested against <code>java.util.ArrayDeque</code> through an
+ * interface declared by the tester. Return values are compared with {@link Objects#deepEquals(Object, Object)}, so
+ * the interface's methods should return JDK types.
+ * <p>
+ * Each sequence is replayed on the tested class as a single task, so thousands of operations cost one handoff to
+ * the thread running student code, and the timeout applies to the sequence as a whole.
+ * Sequences depend only on the seed, so every submission is tested with the same ones.
+ *
+ * @author Afonso Caniço
+ */
+public class Differential {
+
+    private static final int MAX_SHRINK_REPLAYS = 200;
+
+    private static final long MAX_SHRINK_MILLIS = 10_000L; // Across all replays, which may each take up to the timeout
+
+    /**
+     * A call to one of the interface's methods.
+     */
+    private record Operation(int method, Object[] arguments) {
+
+        private Operation withArgument(int index, Object argument) {
+            Object[] copy = arguments.clone();
+            copy[index] = argument;
+            return new Operation(method, copy);
+        }
+    }
+
+    /**
+     * What an operation did: returned a value, threw an exception (by class name, since the reference and the
+     * tested class may throw exceptions of their own classes) or didn't finish in time.
+     */
+    private record Outcome(Object value, String thrown, boolean timedOut) {
+
+        private boolean matches(Outcome other) {
+            if (timedOut || other.timedOut)
+                return false;
+            if (thrown != null || other.thrown != null)
+                return Objects.equals(thrown, other.thrown);
+            return Objects.deepEquals(value, other.value);
+        }
+
+        private String describe(boolean participle) {
+            if (timedOut)
+                return participle ? "finished" : "timed out";
+            if (thrown != null)
+                return (participle ? "thrown " : "threw ") + thrown;
+            return "returned " + Extensions.toStringOrDefault(value).trim();
+        }
+    }
+
+    private record Divergence(int index, Outcome expected, Outcome actual) { }
+
+    private static final Divergence SHRINK_TIMEOUT = new Divergence(-1, null, null); // A shrinking replay timed out
+
+    private final Tester tester;
+
+    private final Class<?> api;
+
+    private final Method[] methods;
+
+    private final Method[] referenceMethods;
+
+    private final Method[] testedMethods;
+
+    private final Class<?> reference;
+
+    private final Class<?> tested;
+
+    private final Map<Class<?>, Function<SplittableRandom, Object>> generators = new HashMap<>();
+
+    private final double[] weights;
+
+    private Class<?>[] parameterTypes = new Class<?>[0];
+
+    private Object[] initArgs = new Object[0];
+
+    private long seed = Fixtures.getSeed();
+
+    private int sequences = 20;
+
+    private int length = 1000;
+
+    Differential(Tester tester, Class<?> api, Class<?> reference, Class<?> tested) throws NoSuchMethodException {
+        if (!api.isInterface())
+            throw new IllegalArgumentException("Not an interface: " + api.getName());
+        this.tester = tester;
+        this.api = api;
+        this.reference = reference;
+        this.tested = tested;
+
+        List<Method> declared = new ArrayList<>();
+        for (Method method : api.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers()) && !method.isDefault())
+                declared.add(method);
+        }
+        declared.sort(Comparator.comparing(Method::toGenericString)); // Declaration order isn't guaranteed
+        this.methods = declared.toArray(Method[]::new);
+        this.referenceMethods = new Method[methods.length];
+        this.testedMethods = new Method[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            referenceMethods[i] = findReferenceMethod(reference, methods[i]);
+            testedMethods[i] = tester.findMethod(tested, methods[i].getName(), methods[i].getParameterTypes());
+            referenceMethods[i].setAccessible(true);
+            testedMethods[i].setAccessible(true);
+        }
+        this.weights = new double[methods.length];
+        Arrays.fill(weights, 1.0);
+
+        withGenerator(int.class, random -> random.nextInt(100));
+        withGenerator(Integer.class, random -> random.nextInt(100));
+        withGenerator(Object.class, random -> random.nextInt(100)); // Erased type parameters
+        withGenerator(long.class, random -> random.nextLong(100));
+        withGenerator(Long.class, random -> random.nextLong(100));
+        withGenerator(double.class, random -> (double) random.nextInt(100) / 4);
+        withGenerator(Double.class, random -> (double) random.nextInt(100) / 4);
+        withGenerator(boolean.class, SplittableRandom::nextBoolean);
+        withGenerator(Boolean.class, SplittableRandom::nextBoolean);
+        withGenerator(char.class, random -> (char) ('a' + random.nextInt(26)));
+        withGenerator(Character.class, random -> (char) ('a' + random.nextInt(26)));
+        withGenerator(String.class, random -> String.valueOf((char) ('a' + random.nextInt(26))).repeat(1 + random.nextInt(3)));
+    }
+
+    /**
+     * Generates the arguments of the given type. Small domains make collisions (e.g. duplicate keys) likely, which
+     * is usually where implementations diverge. By default, integers are drawn from [0, 100) and strings are short.
+     * @param type The parameter type, e.g. <code>int.class</code>, or <code>Object.class</code> for erased type
+     *             parameters.
+     * @param generator Generates an argument from a random number generator.
+     */
+    public Differential withGenerator(Class<?> type, Function<SplittableRandom, Object> generator) {
+        generators.put(type, generator);
+        return this;
+    }
+
+    /**
+     * Makes operations on the given method more or less likely. By default, every method is equally likely.
+     * @param name The method's name. Applies to every overload.
+     * @param weight The method's relative weight, e.g. 2 to call it twice as often. 0 to never call it.
+     */
+    public Differential withWeight(String name, double weight) {
+        if (weight < 0.0)
+            throw new IllegalArgumentException("Operation weight must not be negative: " + weight);
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i].getName().equals(name))
+                weights[i] = weight;
+        }
+        return this;
+    }
+
+    /**
+     * Instantiates both classes with the given constructor. By default, with their constructors without parameters.
+     */
+    public Differential withConstructor(Class<?>[] parameterTypes, Object... initArgs) {
+        this.parameterTypes = parameterTypes;
+        this.initArgs = initArgs;
+        return this;
+    }
+
+    public Differential withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param sequences The number of sequences to replay. Each starts from new instances.
+     * @param length The number of operations in each sequence.
+     */
+    public Differential withSequences(int sequences, int length) {
+        this.sequences = sequences;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * Replays the sequences until one diverges, logging the result. Fails the test if the tested class diverged.
+     */
+    public void assertBehavesLikeReference() throws Tester.ManualFailureException {
+        double total = Arrays.stream(weights).sum();
+        if (total <= 0.0)
+            throw new IllegalStateException("No operations to replay: every method of " + api.getName() + " has weight 0.");
+
+        int replayed = 0;
+        for (int i = 0; i < sequences; i++) {
+            List<Operation> sequence = generate(new SplittableRandom(seed ^ (i * 0x9E3779B97F4A7C15L)), total);
+            Divergence divergence = replay(sequence, false);
+            if (divergence == null) {
+                replayed += sequence.size();
+                continue;
+            }
+            replayed += divergence.index() + 1;
+
+            int original = divergence.index() + 1;
+            List<Operation> shrunk = new ArrayList<>(sequence.subList(0, original));
+            if (!divergence.actual().timedOut()) // Every replay of a timed out sequence takes the whole timeout
+                divergence = shrink(shrunk, divergence);
+
+            List<String> steps = new ArrayList<>();
+            for (Operation operation : shrunk)
+                steps.add(describe(operation));
+            tester.log(new DifferentialResult(tester.currentTest(), api.getSimpleName(), i + 1, replayed, steps,
+                    divergence.expected().describe(true), divergence.actual().describe(false), original));
+            tester.fail();
+        }
+        tester.log(new DifferentialResult(tester.currentTest(), api.getSimpleName(), sequences, replayed));
+    }
+
+    private List<Operation> generate(SplittableRandom random, double total) {
+        List<Operation> sequence = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            double pick = random.nextDouble() * total;
+            int method = 0;
+            while (method < methods.length - 1 && (pick -= weights[method]) >= 0.0)
+                method++;
+            while (weights[method] == 0.0) // Rounding landed past the last weighted method
+                method--;
+
+            Class<?>[] types = methods[method].getParameterTypes();
+            Object[] arguments = new Object[types.length];
+            for (int j = 0; j < types.length; j++) {
+                Function<SplittableRandom, Object> generator = generators.get(types[j]);
+                if (generator == null)
+                    throw new IllegalStateException("No generator for arguments of type " + types[j].getName() + " of " + methods[method].getName());
+                arguments[j] = generator.apply(random);
+            }
+            sequence.add(new Operation(method, arguments));
+        }
+        return sequence;
+    }
+
+    /**
+     * Replays a sequence on the reference, then on the tested class, as a single task, comparing outcomes as it goes.
+     * @param sequence The operations.
+     * @param shrinking Is the replay a shrinking attempt? If so, timeouts don't count as divergences.
+     * @return The first divergence, null if there was none, or {@link #SHRINK_TIMEOUT} if a shrinking attempt timed
+     * out.
+     */
+    private Divergence replay(List<Operation> sequence, boolean shrinking) throws Tester.ManualFailureException {
+        Outcome[] expected = new Outcome[sequence.size()];
+        try {
+            Constructor<?> constructor = reference.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            Object instance = constructor.newInstance(initArgs);
+            for (int i = 0; i < expected.length; i++)
+                expected[i] = apply(referenceMethods, instance, sequence.get(i));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not instantiate the reference " + reference.getName() + ": " + e, e);
+        }
+
+        AtomicInteger progress = new AtomicInteger();
+        try {
+            return tester.runTask(() -> {
+                Constructor<?> constructor = tested.getDeclaredConstructor(parameterTypes);
+                constructor.setAccessible(true);
+                Object instance = constructor.newInstance(initArgs);
+                for (int i = 0; i < expected.length; i++) {
+                    progress.set(i);
+                    Outcome actual = apply(testedMethods, instance, sequence.get(i));
+                    if (!actual.matches(expected[i]))
+                        return new Divergence(i, expected[i], actual);
+                }
+                return null;
+            });
+        } catch (TimeoutException e) {
+            return shrinking ? SHRINK_TIMEOUT : new Divergence(progress.get(), expected[progress.get()], new Outcome(null, null, true));
+        } catch (ExecutionException e) {
+            tester.fail("Could not instantiate " + tested.getSimpleName() + ": " + e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Evaluation was cancelled
+            tester.fail();
+            return null;
+        }
+    }
+
+    private static Method findReferenceMethod(Class<?> reference, Method method) throws NoSuchMethodException {
+        try {
+            return reference.getMethod(method.getName(), method.getParameterTypes()); // Includes inherited methods
+        } catch (NoSuchMethodException e) {
+            return reference.getDeclaredMethod(method.getName(), method.getParameterTypes());
+        }
+    }
+
+    private static Outcome apply(Method[] implementation, Object instance, Operation operation) throws IllegalAccessException {
+        try {
+            return new Outcome(implementation[operation.method()].invoke(instance, operation.arguments()), null, false);
+        } catch (InvocationTargetException e) {
+            return new Outcome(null, e.getTargetException().getClass().getName(), false);
+        }
+    }
+
+    /**
+     * Shrinks a diverging sequence in place: first removes chunks of operations, halving the chunks' size whenever
+     * none can be removed, then replaces arguments with simpler ones (e.g. 0), as long as the sequence still diverges.
+     * Stops at the first candidate that times out, since the others would likely take as long, and once a number of
+     * replays or a total time is spent.
+     * @param sequence The operations up to and including the diverging one.
+     * @param divergence The sequence's divergence.
+     * @return The divergence of the shrunk sequence.
+     */
+    private Divergence shrink(List<Operation> sequence, Divergence divergence) throws Tester.ManualFailureException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_SHRINK_MILLIS);
+        int replays = 0;
+        int chunk = Math.max(1, sequence.size() / 2);
+        while (canReplay(replays, deadline)) {
+            boolean removed = false;
+            for (int start = 0; start < sequence.size() && sequence.size() > 1 && canReplay(replays, deadline); ) {
+                List<Operation> candidate = new ArrayList<>(sequence.subList(0, start));
+                candidate.addAll(sequence.subList(Math.min(sequence.size(), start + chunk), sequence.size()));
+                Divergence shrunk = candidate.isEmpty() ? null : replay(candidate, true);
+                replays++;
+                if (shrunk == SHRINK_TIMEOUT)
+                    return divergence;
+                if (shrunk != null) {
+                    sequence.clear();
+                    sequence.addAll(candidate.subList(0, shrunk.index() + 1));
+                    divergence = shrunk;
+                    removed = true;
+                } else
+                    start += chunk;
+            }
+            if (!removed) {
+                if (chunk == 1)
+                    break;
+                chunk /= 2;
+            }
+        }
+
+        for (int i = 0; i < sequence.size() && canReplay(replays, deadline); i++) {
+            Object[] arguments = sequence.get(i).arguments();
+            for (int j = 0; j < arguments.length && canReplay(replays, deadline); j++) {
+                Object simpler = simplify(arguments[j]);
+                if (simpler == null || simpler.equals(arguments[j]))
+                    continue;
+                List<Operation> candidate = new ArrayList<>(sequence);
+                candidate.set(i, sequence.get(i).withArgument(j, simpler));
+                Divergence shrunk = replay(candidate, true);
+                replays++;
+                if (shrunk == SHRINK_TIMEOUT)
+                    return divergence;
+                if (shrunk != null && shrunk.index() == sequence.size() - 1) {
+                    sequence.set(i, candidate.get(i));
+                    divergence = shrunk;
+                }
+            }
+        }
+        return divergence;
+    }
+
+    private static boolean canReplay(int replays, long deadline) {
+        return replays < MAX_SHRINK_REPLAYS && System.nanoTime() - deadline < 0;
+    }
+
+    private static Object simplify(Object argument) {
+        if (argument instanceof Integer)
+            return 0;
+        if (argument instanceof Long)
+            return 0L;
+        if (argument instanceof Double)
+            return 0.0;
+        if (argument instanceof Boolean)
+            return false;
+        if (argument instanceof Character)
+            return 'a';
+        if (argument instanceof String)
+            return "a";
+        return null;
+    }
+
+    private String describe(Operation operation) {
+        StringBuilder s = new StringBuilder(methods[operation.method()].getName() + "(");
+        Object[] arguments = operation.arguments();
+        for (int i = 0; i < arguments.length; i++) {
+            if (i > 0)
+                s.append(", ");
+            s.append(Extensions.toStringOrDefault(arguments[i]).trim());
+        }
+        return s.append(")").toString();
+    }
+}
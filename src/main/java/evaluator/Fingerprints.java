@@ -0,0 +1,182 @@
+package evaluator;
+
+import evaluator.annotations.*;
+import loading.Bytecode;
+import loading.ClassFiles;
+
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Fingerprints of each test of a tester class, so that a test's previous results can be reused as long as neither
+ * the test nor anything it depends on changed. A test's fingerprint covers:
+ * <ul>
+ *     <li>Its annotations (e.g. its weight) and bytecode;</li>
+ *     <li>The bytecode of every tester method it calls, directly or through other tester methods, including lambda
+ *     bodies and the methods of nested classes it instantiates;</li>
+ *     <li>The {@link BeforeEach} methods, and whatever runs before any test: the {@link BeforeAll} methods, the
+ *     tester's constructors, static initialisers, and class annotations;</li>
+ *     <li>The evaluator library itself (see {@link ClassFiles#hashLibrary(Class)}), which decides e.g. what each
+ *     assertion accepts.</li>
+ * </ul>
+ * Constant pool references are compared by the symbols they name (see {@link Bytecode}), so changing one test doesn't
+ * change the fingerprints of the others. A call is resolved as the JVM would, by looking for the method in the class
+ * the call names and then in its superclasses, since that class may inherit it (JLS §13.1); overrides in subclasses of
+ * that class are included too, as they may be the ones that run. Methods inherited from {@link Tester} itself are not
+ * part of the fingerprint.
+ *
+ * @author Afonso Caniço
+ */
+public class Fingerprints {
+
+    private final Map<String, Bytecode.Method> methods = new HashMap<>();
+
+    private final Map<String, List<Bytecode.Method>> methodsByClass = new HashMap<>();
+
+    private final Map<String, String> superclasses = new HashMap<>(); // By binary class name
+
+    private final Map<String, SortedSet<String>> dependencies = new HashMap<>(); // By test method name
+
+    private final Map<String, String> fingerprints = new HashMap<>(); // By test method name
+
+    /**
+     * @param tester The tester class.
+     * @throws IOException If the tester's class files can't be read.
+     */
+    public Fingerprints(Class<? extends Tester> tester) throws IOException {
+        for (byte[] classFile : ClassFiles.read(tester, Tester.class).values()) {
+            Bytecode bytecode = new Bytecode(classFile);
+            methodsByClass.put(bytecode.getName(), bytecode.getMethods());
+            if (bytecode.getSuperclassName() != null)
+                superclasses.put(bytecode.getName(), bytecode.getSuperclassName());
+            for (Bytecode.Method method : bytecode.getMethods())
+                methods.put(method.getKey(), method);
+        }
+
+        // Whatever runs before any test
+        Set<String> common = new TreeSet<>();
+        for (Class<?> type = tester; type != null && type != Tester.class; type = type.getSuperclass()) {
+            for (Bytecode.Method method : methodsByClass.getOrDefault(type.getName(), List.of())) {
+                if (method.getName().equals("<init>") || method.getName().equals("<clinit>"))
+                    common.add(method.getKey());
+            }
+        }
+        for (Method hook : Tester.getAnnotatedMethods(tester, BeforeAll.class))
+            common.add(key(hook));
+        for (Method hook : Tester.getAnnotatedMethods(tester, BeforeEach.class))
+            common.add(key(hook));
+        String header = ClassFiles.hashLibrary(Tester.class) + "\n" + Arrays.toString(tester.getAnnotations());
+
+        for (Method test : Tester.getAnnotatedMethods(tester, Test.class)) {
+            Set<String> roots = new TreeSet<>(common);
+            roots.add(key(test));
+            SortedSet<String> reachable = reachable(roots);
+            dependencies.put(test.getName(), reachable);
+            fingerprints.put(test.getName(), hash(header + "\n" + Arrays.toString(test.getAnnotations()), reachable));
+        }
+    }
+
+    /**
+     * @param test The name of a test method.
+     * @return The test's fingerprint, or null if there is no such test.
+     */
+    public String get(String test) {
+        return fingerprints.get(test);
+    }
+
+    /**
+     * @return Every test's fingerprint, by test method name.
+     */
+    public Map<String, String> getAll() {
+        return Collections.unmodifiableMap(fingerprints);
+    }
+
+    /**
+     * @param test The name of a test method.
+     * @return The keys of the tester methods the test's fingerprint covers, or null if there is no such test.
+     */
+    SortedSet<String> getDependencies(String test) {
+        return dependencies.get(test);
+    }
+
+    private static String key(Method method) {
+        String descriptor = MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString();
+        return Bytecode.key(method.getDeclaringClass().getName(), method.getName(), descriptor);
+    }
+
+    /**
+     * Finds every tester method that may run as a consequence of running the given methods.
+     * @param roots The keys of the methods to start from.
+     * @return The keys of all reachable tester methods, sorted.
+     */
+    private SortedSet<String> reachable(Set<String> roots) {
+        SortedSet<String> visited = new TreeSet<>();
+        Deque<String> pending = new ArrayDeque<>(roots);
+        while (!pending.isEmpty()) {
+            for (String key : resolve(pending.pop())) {
+                if (!visited.add(key))
+                    continue;
+                Bytecode.Method method = methods.get(key);
+                pending.addAll(method.getReferencedMethods());
+                for (String type : method.getInstantiatedClasses()) {
+                    for (Bytecode.Method member : methodsByClass.getOrDefault(type, List.of()))
+                        pending.add(member.getKey());
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Finds the tester methods a reference to a method may run: the declaration it resolves to, found by looking in
+     * the class the reference names and then in its superclasses, and any overrides in that class's subclasses.
+     * @param key The key of the referenced method.
+     * @return The keys of the tester methods, or nothing if the method isn't part of the tester (e.g. library code).
+     */
+    private List<String> resolve(String key) {
+        int parameters = key.indexOf('(');
+        int separator = key.lastIndexOf('.', parameters);
+        String owner = key.substring(0, separator);
+        String name = key.substring(separator + 1, parameters);
+        String descriptor = key.substring(parameters);
+        if (name.startsWith("<")) // Constructors and initialisers are neither inherited nor overridden
+            return methods.containsKey(key) ? List.of(key) : List.of();
+
+        List<String> targets = new ArrayList<>();
+        for (String type = owner; type != null; type = superclasses.get(type)) {
+            String declaration = Bytecode.key(type, name, descriptor);
+            if (methods.containsKey(declaration)) {
+                targets.add(declaration);
+                break;
+            }
+        }
+        for (String type : methodsByClass.keySet()) {
+            String override = Bytecode.key(type, name, descriptor);
+            if (!type.equals(owner) && methods.containsKey(override) && isSubclass(type, owner))
+                targets.add(override);
+        }
+        return targets;
+    }
+
+    private boolean isSubclass(String type, String ancestor) {
+        for (String current = superclasses.get(type); current != null; current = superclasses.get(current)) {
+            if (current.equals(ancestor))
+                return true;
+        }
+        return false;
+    }
+
+    private String hash(String header, SortedSet<String> keys) {
+        MessageDigest digest = ClassFiles.sha256();
+        digest.update(header.getBytes(StandardCharsets.UTF_8));
+        for (String key : keys) {
+            digest.update(("\n" + key + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(methods.get(key).getCanonicalCode().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,157 @@
+package evaluator;
+
+import extensions.Console;
+import loading.ClassFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared corpus of large test inputs. Each input is generated once per process from a seed and its name, instead of
+ * once per submission, and is kept outside the heap: in direct buffers, or in memory-mapped files if a corpus folder
+ * is set, in which case inputs are also reused across runs. The same seed always produces the same inputs, so every
+ * submission is tested with the same data.
+ * <p>
+ * Inputs are handed out as read-only views or as fresh copies, so no submission can modify another's input.
+ * <p>
+ * Corpus files are named after a hash of the input's name, seed, length and range, and start with a header holding
+ * those in full, which is checked before an existing file is reused.
+ *
+ * @author Afonso Caniço
+ */
+public class Fixtures {
+
+    private static final Map<String, IntBuffer> INTS = new ConcurrentHashMap<>();
+
+    private static volatile long seed = 0xAEDEL;
+
+    private static volatile File directory;
+
+    /**
+     * Sets the seed inputs are generated from. Inputs generated with a different seed are discarded.
+     * @param seed The seed.
+     */
+    public static void setSeed(long seed) {
+        Fixtures.seed = seed;
+        INTS.clear();
+    }
+
+    public static long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Keeps inputs in memory-mapped files inside a folder, reusing those generated by previous runs with the same
+     * seed. By default, inputs are kept in (non-persistent) direct buffers.
+     * @param directory The corpus folder, or null to stop using one.
+     */
+    public static void setDirectory(File directory) {
+        Fixtures.directory = directory;
+        INTS.clear();
+    }
+
+    /**
+     * A read-only view of an array of random integers. Views are cheap; each has its own position.
+     * @param name The input's name. Inputs with the same name, seed, length and range are the same.
+     * @param length The number of integers.
+     * @param min The smallest possible integer (inclusive).
+     * @param max The largest possible integer (exclusive).
+     * @return A read-only view of the input, positioned at its first integer.
+     */
+    public static IntBuffer ints(String name, int length, int min, int max) {
+        long seed = Fixtures.seed;
+        String key = name + "-" + seed + "-" + length + "-" + min + "-" + max;
+        return INTS.computeIfAbsent(key, k -> generate(k, seed, name, length, min, max)).duplicate();
+    }
+
+    /**
+     * A copy of an array of random integers, which the caller may modify. See also: {@link #ints(String, int, int, int)}.
+     */
+    public static int[] intArray(String name, int length, int min, int max) {
+        int[] array = new int[length];
+        ints(name, length, min, max).get(array);
+        return array;
+    }
+
+    /**
+     * A boxed copy of an array of random integers, for code that expects an <code>Integer[]</code>.
+     * See also: {@link #ints(String, int, int, int)}.
+     */
+    public static Integer[] integerArray(String name, int length, int min, int max) {
+        IntBuffer ints = ints(name, length, min, max);
+        Integer[] array = new Integer[length];
+        for (int i = 0; i < length; i++)
+            array[i] = ints.get(i);
+        return array;
+    }
+
+    private static IntBuffer generate(String key, long seed, String name, int length, int min, int max) {
+        File directory = Fixtures.directory;
+        try {
+            if (directory != null)
+                return map(directory, key, seed, name, length, min, max);
+        } catch (IOException e) {
+            Console.warning("Could not use the fixture corpus in " + directory.getPath() + ": " + e.getMessage());
+        }
+        ByteBuffer bytes = ByteBuffer.allocateDirect(Math.multiplyExact(length, Integer.BYTES));
+        fill(bytes.asIntBuffer(), seed, name, min, max);
+        return bytes.asIntBuffer().asReadOnlyBuffer();
+    }
+
+    private static IntBuffer map(File directory, String key, long seed, String name, int length, int min, int max) throws IOException {
+        File file = new File(directory, HexFormat.of().formatHex(ClassFiles.sha256().digest(key.getBytes(StandardCharsets.UTF_8))) + ".ints");
+        ByteBuffer header = header(key);
+        long size = Math.multiplyExact((long) length, Integer.BYTES);
+        if (!file.isFile() || file.length() != header.capacity() + size || !hasHeader(file, header)) {
+            // Generate into a temporary file first, so a concurrent run never maps a half-written input
+            java.nio.file.Files.createDirectories(file.getParentFile().toPath());
+            Path temp = java.nio.file.Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.write(header.duplicate());
+                fill(channel.map(FileChannel.MapMode.READ_WRITE, header.capacity(), size).asIntBuffer(), seed, name, min, max);
+            }
+            java.nio.file.Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, header.capacity(), size).asIntBuffer(); // Stays valid once closed
+        }
+    }
+
+    /**
+     * The header of an input's corpus file: the length of the input's key, then the key itself, padded so that the
+     * integers that follow are aligned.
+     */
+    private static ByteBuffer header(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int size = Integer.BYTES + bytes.length;
+        ByteBuffer header = ByteBuffer.allocate(size + (Integer.BYTES - size % Integer.BYTES) % Integer.BYTES);
+        header.putInt(bytes.length).put(bytes);
+        return header.clear();
+    }
+
+    private static boolean hasHeader(File file, ByteBuffer expected) throws IOException {
+        ByteBuffer actual = ByteBuffer.allocate(expected.capacity());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (actual.hasRemaining() && channel.read(actual) != -1) { }
+        }
+        return Arrays.equals(actual.array(), expected.array());
+    }
+
+    private static void fill(IntBuffer buffer, long seed, String name, int min, int max) {
+        SplittableRandom random = new SplittableRandom(seed ^ (name.hashCode() * 0x9E3779B97F4A7C15L));
+        while (buffer.hasRemaining())
+            buffer.put(max > min ? random.nextInt(min, max) : min);
+    }
+}
@@ -8,18 +8,21 @@ import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
-import de.jplag.JPlag;
 import de.jplag.JPlagResult;
-import de.jplag.exceptions.ExitException;
-import de.jplag.options.JPlagOptions;
-import de.jplag.java.JavaLanguage;
 
-import de.jplag.reporting.reportobject.ReportObjectFactory;
+import evaluator.annotations.Test;
+import evaluator.messages.Result;
+import evaluator.messages.SubmissionTimeoutError;
 import extensions.*;
 import loading.ClassLoader;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.LoggerFactory;
+import reflection.Callbacks;
+import reflection.Reflector;
+import reflection.ResourceQuota;
 
 /**
  * Class used for testing a batch of source code files and collecting all results.
@@ -30,6 +33,14 @@ public class FullEvaluator<T extends Tester> {
 
 	private static final long SUBMISSION_TIMEOUT_MINUTES = 5L;
 
+	private static final long SAMPLE_MILLIS = 500L; // How often the concurrency controller is consulted
+
+	private long submissionTimeout = SUBMISSION_TIMEOUT_MINUTES;
+
+	private TimeUnit submissionTimeoutUnit = TimeUnit.MINUTES;
+
+	private Consumer<Report.Entry> listener;
+
 	private ExecutorService THREAD_POOL;
 
 	private final Class<T> tester;
@@ -42,6 +53,30 @@ public class FullEvaluator<T extends Tester> {
 
 	private File referenceCodeFolder;
 
+	private ResourceQuota quota = ResourceQuota.UNLIMITED;
+
+	private Report history;
+
+	private ConcurrencyController concurrency;
+
+	private boolean plagiarism = true;
+
+	private Oracle oracle;
+
+	private Reflector.InvocationMode invocationMode = Reflector.InvocationMode.HANDOFF;
+
+	private int testParallelism = 1;
+
+	private File journalFile;
+
+	private Journal journal;
+
+	private File manifestFile;
+
+	private ExecutorService evaluations; // Single submissions, see evaluate(Submission)
+
+	private final Map<File, Report.Entry> reusedTests = new HashMap<>(); // Partial results of a previous run
+
 	public FullEvaluator(String root, String description, Class<T> tester) {
 		this.root = root;
 		this.description = description;
@@ -49,18 +84,164 @@ public class FullEvaluator<T extends Tester> {
 		this.expected = Tester.getAllRequiredFiles(tester).stream().toList();
 	}
 
+	/**
+	 * Sets the reference implementation. Its code isn't considered plagiarism. See also: {@link #withOracle()}.
+	 * @param folder Folder containing the reference implementation's source code files.
+	 */
 	public FullEvaluator<T> withReference(File folder) {
 		this.referenceCodeFolder = folder;
 		return this;
 	}
 
+	/**
+	 * Lets testers compute expected results from the reference implementation, once for every submission. See also:
+	 * {@link Tester#getOracle()}. Every method call's arguments are then copied in full before the call, since the
+	 * reference must be given them as they were, so only enable it for testers that use it.
+	 */
+	public FullEvaluator<T> withOracle() {
+		return withOracle(null);
+	}
+
+	/**
+	 * Lets testers compute expected results from the reference implementation, persisting them across runs.
+	 * See also: {@link #withOracle()}.
+	 * @param expectedResults File the expected results are kept in. Results of a different version of the reference are
+	 *                        discarded.
+	 */
+	public FullEvaluator<T> withOracle(File expectedResults) {
+		if (referenceCodeFolder == null)
+			throw new IllegalStateException("Set the reference implementation with withReference before enabling the oracle.");
+		this.oracle = new Oracle(referenceCodeFolder, expectedResults);
+		return this;
+	}
+
+	/**
+	 * Uses the evaluation times recorded in a previous run's report to schedule the most expensive submissions first.
+	 * Without a previous report, submissions are ordered by the size of their source code files.
+	 * @param previous A report from a previous run of the same evaluation.
+	 */
+	public FullEvaluator<T> withHistory(Report previous) {
+		this.history = previous;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum time the evaluation of a single submission may take, counted from the moment its evaluation
+	 * starts. Submissions that exceed it are aborted and graded with a {@link SubmissionTimeoutError}.
+	 * @param timeout The per-submission deadline.
+	 * @param unit The deadline's time unit.
+	 */
+	public FullEvaluator<T> withSubmissionTimeout(long timeout, TimeUnit unit) {
+		this.submissionTimeout = timeout;
+		this.submissionTimeoutUnit = unit;
+		return this;
+	}
+
+	/**
+	 * Sets a listener that is notified of each submission's report entry as soon as its evaluation finishes.
+	 * Entries are delivered in completion order, on the thread running the evaluation.
+	 * @param listener The report entry listener.
+	 */
+	public FullEvaluator<T> withListener(Consumer<Report.Entry> listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Limits the resources each submission's code may consume. Submissions exceeding the quota are aborted,
+	 * without affecting the evaluation of the remaining submissions.
+	 * @param quota The per-submission resource quota.
+	 */
+	public FullEvaluator<T> withQuota(ResourceQuota quota) {
+		this.quota = quota;
+		return this;
+	}
+
+	/**
+	 * Sets how testers invoke the submissions' code. {@link Reflector.InvocationMode#SAME_THREAD} saves a thread
+	 * switch per invocation, but relies on the submission timeout to abandon code that ignores interrupts.
+	 * See also: {@link #withSubmissionTimeout}.
+	 * @param mode The invocation mode. By default, {@link Reflector.InvocationMode#HANDOFF}.
+	 */
+	public FullEvaluator<T> withInvocationMode(Reflector.InvocationMode mode) {
+		this.invocationMode = mode;
+		return this;
+	}
+
+	/**
+	 * Runs up to the given number of each submission's tests at the same time. Useful when there are many tests and
+	 * few submissions, e.g. when re-evaluating a single submission. See also: {@link Tester#setParallelism(int)}.
+	 * @param parallelism The maximum number of tests of a single submission running at the same time.
+	 */
+	public FullEvaluator<T> withTestParallelism(int parallelism) {
+		this.testParallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Sets the checkpoint journal to which each submission's report entry is appended as soon as it is evaluated.
+	 * By default, the journal is kept next to the root directory, in {@code <root>.journal.jsonl}.
+	 * @param file The journal file.
+	 */
+	public FullEvaluator<T> withJournal(File file) {
+		this.journalFile = file;
+		return this;
+	}
+
+	/**
+	 * Evaluates only the submissions whose source code files, or whose tester, changed since the previous run that
+	 * used the same manifest, reusing the previous results for the rest. If only some tests changed, only those are
+	 * run again. The manifest is updated after each run.
+	 * @param file The manifest file. See also: {@link Manifest}.
+	 */
+	public FullEvaluator<T> withManifest(File file) {
+		this.manifestFile = file;
+		return this;
+	}
+
+	/**
+	 * Enables or disables the plagiarism analysis, which is enabled by default. When disabled, JPlag isn't loaded.
+	 * @param enabled True to run the plagiarism analysis; False otherwise.
+	 */
+	public FullEvaluator<T> withPlagiarismAnalysis(boolean enabled) {
+		this.plagiarism = enabled;
+		return this;
+	}
+
+	/**
+	 * Validates all files and evaluates all source code files present in the parent directory, adapting the number
+	 * of submissions evaluated at the same time to the machine. See also: {@link ConcurrencyController#adaptive()}.
+	 */
+	public Report run() {
+		return run(ConcurrencyController.adaptive(), false);
+	}
+
 	/**
 	 * Validates all files and evaluates all source code files present in the parent directory.
 	 */
 	public Report run(int threads) {
+		return run(threads, false);
+	}
+
+	/**
+	 * Validates all files and evaluates all source code files present in the parent directory.
+	 * @param resume If true, only submissions missing from the checkpoint journal are evaluated, and the report is
+	 *               completed with the journal's entries. Otherwise, the journal is started anew.
+	 */
+	public Report run(int threads, boolean resume) {
+		return run(ConcurrencyController.fixed(threads), resume);
+	}
+
+	/**
+	 * Validates all files and evaluates all source code files present in the parent directory.
+	 * @param concurrency Decides how many submissions are evaluated at the same time.
+	 * @param resume See {@link #run(int, boolean)}.
+	 */
+	public Report run(ConcurrencyController concurrency, boolean resume) {
 		try {
-			// Set thread pool
-			THREAD_POOL = Executors.newFixedThreadPool(threads);
+			// Set thread pool. A plain pool, so cancelling an overdue evaluation interrupts its tester.
+			this.concurrency = concurrency;
+			THREAD_POOL = Executors.newFixedThreadPool(concurrency.getMaximum());
 
 			// Validate Submitted Files
 			Map<File, Submission> submissions = validateSubmissions();
@@ -68,52 +249,184 @@ public class FullEvaluator<T extends Tester> {
 
 			Report report = new Report(description);
 
+			// An interrupted run may have left cleaned code files behind
+			if (resume)
+				restoreSubmissionCodeFiles(submissions);
+
 			// Run Plagiarism Checker (before evaluator cleans code files!)
-			if (submissions.size() >= 2)
+			if (plagiarism && submissions.size() >= 2)
 				report.setPlagiarismAnalysis(checkPlagiarism());
 
+			// Recover the submissions evaluated before the last run was interrupted
+			journal = new Journal(journalFile != null ? journalFile : getDefaultJournalFile(), tester);
+			Map<File, Submission> remaining = new LinkedHashMap<>(submissions);
+			if (resume) {
+				Map<File, File> directories = new HashMap<>();
+				for (File directory : submissions.keySet())
+					directories.put(directory.getAbsoluteFile(), directory);
+				for (Report.Entry entry : journal.recover()) {
+					File directory = directories.get(entry.getSubmission().getDirectory().getAbsoluteFile());
+					if (directory != null && remaining.remove(directory) != null)
+						report.add(entry);
+				}
+				System.out.println("Resuming evaluation: " + report.size() + " submission(s) recovered from " + journal.getFile().getPath());
+			} else journal.clear();
+
+			// Reuse the previous run's results for submissions that didn't change since (hashed before cleaning!)
+			Manifest manifest = manifestFile != null ? new Manifest(manifestFile, tester) : null;
+			Map<File, String> contentHashes = new HashMap<>();
+			int skipped = 0;
+			reusedTests.clear();
+			if (manifest != null) {
+				for (Map.Entry<File, Submission> submission : submissions.entrySet())
+					contentHashes.put(submission.getKey(), Manifest.getContentHash(submission.getValue()));
+
+				Iterator<Map.Entry<File, Submission>> it = remaining.entrySet().iterator();
+				while (it.hasNext()) {
+					Map.Entry<File, Submission> submission = it.next();
+					Report.Entry entry = manifest.reuse(submission.getValue(), contentHashes.get(submission.getKey()));
+					if (entry != null) {
+						report.add(entry);
+						journal.append(entry);
+						it.remove();
+						skipped++;
+					} else {
+						// Only run the tests that changed
+						Report.Entry partial = manifest.reuseTests(submission.getValue(), contentHashes.get(submission.getKey()));
+						if (partial != null)
+							reusedTests.put(submission.getKey(), partial);
+					}
+				}
+			}
+			int evaluated = remaining.size();
+
 			// Evaluate Student Submissions
-			evaluateAllFiles(submissions, report);
+			evaluateAllFiles(remaining, report);
 			ClassLoader.flush();
+			if (oracle != null)
+				oracle.save();
+
+			if (manifest != null) {
+				manifest.write(report, contentHashes);
+				int reusedCount = 0;
+				for (Report.Entry partial : reusedTests.values())
+					reusedCount += partial.getResults().size();
+				System.out.println("Skipped " + skipped + " unchanged submission(s), evaluated " + evaluated + " new or changed submission(s)" +
+						(reusedTests.isEmpty() ? "." : ", reusing the results of " + reusedCount + " unchanged test(s) in " + reusedTests.size() + " of them."));
+			}
 
 			// Restore Student Code Files from Backups
 			restoreSubmissionCodeFiles(submissions);
 
 			return report;
-		} catch (ExecutionException | InterruptedException | IOException e) {
+		} catch (InterruptedException | IOException e) {
 			Console.error("Exception thrown when running full evaluation: " + e.getMessage());
 			throw new RuntimeException(e);
+		} finally {
+			if (THREAD_POOL != null)
+				THREAD_POOL.shutdown(); // Testers still running after being cancelled finish in the background
+			Callbacks.release(); // Stops callbacks left running by this run; later ones (e.g. writing reports) get a new guard
+			Generator.release(tester);
 		}
 	}
 
-	private JPlagResult checkPlagiarism() {
-		JavaLanguage language = new JavaLanguage();
-		Set<File> submissionDirectories = Set.of(new File(root));
-
-		JPlagOptions options = new JPlagOptions(language, submissionDirectories, Set.of())
-				.withFileSuffixes(List.of("java")) // Include only Java files
-				.withNormalize(true) // Normalise token order
-				.withExclusionFileName(".jplag/exclude.txt");
+	/**
+	 * Evaluates a single submission with this evaluator's settings, waiting at most the per-submission timeout.
+	 * Unlike {@link #run(int)}, the submission's code files are left cleaned, so consider evaluating a copy.
+	 * @param submission The submission.
+	 * @return The submission's report entry.
+	 */
+	public Report.Entry evaluate(Submission submission) throws InterruptedException {
+		return evaluate(submission, () -> { });
+	}
 
-		Console.warning("JPlag is ignoring the following files: " + Extensions.joinToString(options.excludedFiles()));
+	/**
+	 * Evaluates a single submission, see {@link #evaluate(Submission)}.
+	 * @param submission The submission.
+	 * @param onStop Run once the evaluating thread stops, which is later than this method returns if the evaluation
+	 *               timed out and the student's code ignores being interrupted.
+	 * @return The submission's report entry.
+	 */
+	Report.Entry evaluate(Submission submission, java.lang.Runnable onStop) throws InterruptedException {
+		Runnable task = new Runnable(submission, tester, null, quota, testParallelism);
+		task.setOracle(oracle);
+		task.setInvocationMode(invocationMode);
+		AtomicBoolean started = new AtomicBoolean();
+		Future<Tester> future = evaluations().submit(() -> {
+			if (!started.compareAndSet(false, true))
+				return null; // Cancelled before it started
+			try {
+				return task.call();
+			} finally {
+				onStop.run();
+			}
+		});
+		try {
+			future.get(submissionTimeout, submissionTimeoutUnit);
+		} catch (TimeoutException e) {
+			cancel(future, started, onStop);
+		} catch (InterruptedException e) {
+			cancel(future, started, onStop);
+			throw e;
+		} catch (ExecutionException ignored) { } // Reported by collect
+		return collect(future, task);
+	}
 
-		if (referenceCodeFolder != null)
-			options = options.withBaseCodeSubmissionDirectory(referenceCodeFolder); // Reference code
+	private static void cancel(Future<Tester> future, AtomicBoolean started, java.lang.Runnable onStop) {
+		future.cancel(true);
+		if (started.compareAndSet(false, true))
+			onStop.run(); // Never started, so there's nothing to wait for
+	}
 
-		try {
-			System.out.println("Running plagiarism analysis using JPlag...");
-			long start = System.currentTimeMillis();
-			JPlagResult result = JPlag.run(options);
-			long end = System.currentTimeMillis();
-			System.out.println("Done! Elapsed time: " + ((end - start) / 1000.0) + " seconds.\n");
-			return result;
-		} catch (ExitException e) {
-			Console.error("Exception thrown when running plagiarism analysis: " + e.getMessage());
-			throw new RuntimeException(e);
+	private synchronized ExecutorService evaluations() {
+		if (evaluations == null) {
+			evaluations = Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task);
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
+		return evaluations;
+	}
+
+	public Class<T> getTester() {
+		return tester;
+	}
+
+	String getRoot() {
+		return root;
+	}
+
+	String getDescription() {
+		return description;
+	}
+
+	List<String> getExpectedFiles() {
+		return expected;
+	}
+
+	boolean isPlagiarismAnalysisEnabled() {
+		return plagiarism;
+	}
+
+	Report getHistory() {
+		return history;
+	}
+
+	Consumer<Report.Entry> getListener() {
+		return listener;
+	}
+
+	private File getDefaultJournalFile() {
+		File directory = new File(root).getAbsoluteFile();
+		return new File(directory.getParentFile(), directory.getName() + ".journal.jsonl");
 	}
 
-	private void restoreSubmissionCodeFiles(Map<File, Submission> submissions) {
+	JPlagResult checkPlagiarism() {
+		return Plagiarism.check(new File(root), referenceCodeFolder);
+	}
+
+	void restoreSubmissionCodeFiles(Map<File, Submission> submissions) {
 		for (File submissionDirectory : submissions.keySet()) {
 			for (File file : Files.walk(submissionDirectory)) {
 				String extension = FilenameUtils.getExtension(file.getName());
@@ -131,7 +444,7 @@ public class FullEvaluator<T extends Tester> {
 		}
 	}
 
-	private Map<File, Submission> validateSubmissions() {
+	Map<File, Submission> validateSubmissions() {
 		Map<File, Submission> submissionMap = new LinkedHashMap<>();
 
 		System.out.println("Checking Submission Files...");
@@ -165,44 +478,165 @@ public class FullEvaluator<T extends Tester> {
 		return submissionMap;
 	}
 
-	private void evaluateAllFiles(Map<File, Submission> submissions, Report report) throws ExecutionException, InterruptedException {
+	private void evaluateAllFiles(Map<File, Submission> submissions, Report report) throws InterruptedException {
 		System.out.println("Evaluating All Submissions...");
 		long start = System.currentTimeMillis();
 
 		// Progress bar! Fancy :)
 		ProgressBar progress = new ProgressBar(2 * submissions.size(), 175, "[" + description + "] Evaluating...");
 
-		// Analyse all submissions in parallel and wait for everything to be finished
-		List<Future<Tester>> analysed = THREAD_POOL.invokeAll(
-				getEvaluationTasks(submissions, tester, progress),
-				submissions.size() * SUBMISSION_TIMEOUT_MINUTES,
-				TimeUnit.MINUTES
-		);
-
-		for (Future<Tester> future : analysed) {
-			Tester test = future.get();
-			Submission submission = test.getSubmission();
+		// Schedule the submissions expected to take longest first, so they don't start last and dominate wall time
+		CostEstimator estimator = new CostEstimator(history);
+		List<Runnable> tasks = getEvaluationTasks(submissions, tester, progress, quota, testParallelism);
+		Map<Runnable, Double> estimates = new HashMap<>();
+		for (Runnable task : tasks) {
+			task.setOracle(oracle);
+			task.setInvocationMode(invocationMode);
+			estimates.put(task, estimator.estimate(task.getSubmission()));
+			if (reusedTests.containsKey(task.getSubmission().getDirectory()))
+				task.reuse(reusedTests.get(task.getSubmission().getDirectory()));
+		}
+		tasks.sort(Comparator.comparing(estimates::get, Comparator.reverseOrder()));
+
+		// Analyse submissions in parallel, as many at a time as the concurrency controller allows, collecting each
+		// one as soon as it finishes
+		CompletionService<Tester> completion = new ExecutorCompletionService<>(THREAD_POOL);
+		Map<Future<Tester>, Runnable> pending = new HashMap<>();
+		Deque<Runnable> queued = new ArrayDeque<>(tasks);
+
+		List<Report.Entry> collected = new ArrayList<>();
+		long deadline = submissionTimeoutUnit.toNanos(submissionTimeout);
+		while (!pending.isEmpty() || !queued.isEmpty()) {
+			int limit = concurrency.sample(pending.size());
+			while (pending.size() < limit && !queued.isEmpty()) {
+				Runnable task = queued.poll();
+				pending.put(completion.submit(task), task);
+			}
 
-			double grade = test.grade();
-			report.add(submission, test.getResults(), grade);
-			progress.step();
+			// Overdue evaluations are cancelled, which interrupts their testers, and reported straight away. The
+			// completion service hands them back once more, which is ignored below.
+			for (Future<Tester> overdue : cancelOverdue(pending, deadline))
+				collected.add(record(collect(overdue, pending.remove(overdue)), report, progress));
+			if (pending.isEmpty())
+				continue;
+
+			long wait = untilNextDeadline(pending, deadline);
+			if (!queued.isEmpty()) // Check again soon whether more submissions may start
+				wait = Math.min(wait, TimeUnit.MILLISECONDS.toNanos(SAMPLE_MILLIS));
+			Future<Tester> future = completion.poll(wait, TimeUnit.NANOSECONDS);
+			if (future == null)
+				continue;
+
+			Runnable task = pending.remove(future);
+			if (task != null) // Otherwise, it was already reported as overdue
+				collected.add(record(collect(future, task), report, progress));
 		}
 
 		long end = System.currentTimeMillis();
 		System.out.println("Done! Elapsed time: " + ((end - start) / 1000.0) + " seconds");
+
+		// Compare against the best possible schedule: all work perfectly balanced, but no shorter than the longest task
+		long totalMillis = 0L;
+		long longestMillis = 0L;
+		for (Report.Entry entry : collected) {
+			totalMillis += entry.getElapsedMillis();
+			longestMillis = Math.max(longestMillis, entry.getElapsedMillis());
+		}
+		long ideal = Math.max(totalMillis / Math.max(1, concurrency.getPeak()), longestMillis);
+		if (end > start && !collected.isEmpty())
+			System.out.printf("Makespan: %.3f seconds (ideal: %.3f seconds, %.1f%% efficiency)%n", (end - start) / 1000.0, ideal / 1000.0, 100.0 * ideal / (end - start));
+	}
+
+	private Report.Entry record(Report.Entry entry, Report report, ProgressBar progress) {
+		report.add(entry);
+		try {
+			journal.append(entry);
+		} catch (IOException e) {
+			Console.warning("Could not record " + entry.getSubmission().getName() + " in the journal: " + e.getMessage());
+		}
+		if (listener != null)
+			listener.accept(entry);
+		progress.step();
+		return entry;
+	}
+
+	/**
+	 * Cancels (and interrupts) every evaluation that has been running for longer than the per-submission deadline.
+	 * @param pending The evaluations yet to be collected.
+	 * @param deadline Maximum evaluation time of a single submission, in nanoseconds.
+	 * @return The evaluations that were cancelled.
+	 */
+	private static List<Future<Tester>> cancelOverdue(Map<Future<Tester>, Runnable> pending, long deadline) {
+		List<Future<Tester>> cancelled = new ArrayList<>();
+		long now = System.nanoTime();
+		for (Map.Entry<Future<Tester>, Runnable> evaluation : pending.entrySet()) {
+			long started = evaluation.getValue().getStartTime();
+			if (started != 0L && !evaluation.getKey().isDone() && now - started >= deadline) {
+				evaluation.getKey().cancel(true);
+				cancelled.add(evaluation.getKey());
+			}
+		}
+		return cancelled;
+	}
+
+	/**
+	 * How long until the next running evaluation becomes overdue?
+	 * @param pending The evaluations yet to be collected.
+	 * @param deadline Maximum evaluation time of a single submission, in nanoseconds.
+	 * @return How long to wait, in nanoseconds, before checking for overdue evaluations again.
+	 */
+	private static long untilNextDeadline(Map<Future<Tester>, Runnable> pending, long deadline) {
+		long now = System.nanoTime();
+		long wait = deadline; // Evaluations that haven't started can't become overdue any sooner
+		for (Runnable task : pending.values()) {
+			if (task.getStartTime() != 0L)
+				wait = Math.min(wait, task.getStartTime() + deadline - now);
+		}
+		return Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	/**
+	 * Builds the report entry of a finished (or cancelled) evaluation.
+	 * @param future The evaluation's future. Must be done or cancelled.
+	 * @param task The evaluation task.
+	 * @return The report entry for the evaluated submission.
+	 */
+	private Report.Entry collect(Future<Tester> future, Runnable task) {
+		Submission submission = task.getSubmission();
+		Map<Test, List<Result>> results = new HashMap<>();
+
+		if (future.isCancelled()) {
+			results.put(null, new ArrayList<>(List.of(new SubmissionTimeoutError(submissionTimeout, submissionTimeoutUnit))));
+			return new Report.Entry(submission, results, 0.0, new HashMap<>(), task.getElapsedMillis());
+		}
+
+		try {
+			Tester test = future.get();
+			if (test != null)
+				return new Report.Entry(submission, test.getResults(), test.grade(), test.getUsage(), task.getElapsedMillis());
+			results.put(null, new ArrayList<>(List.of(Result.evaluationError(null, "Could not evaluate submission: the tester could not be run."))));
+		} catch (ExecutionException e) {
+			results.put(null, new ArrayList<>(List.of(Result.exception(null, e.getCause()))));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			results.put(null, new ArrayList<>(List.of(Result.evaluationError(null, "Could not evaluate submission: the evaluation was interrupted."))));
+		}
+		return new Report.Entry(submission, results, 0.0, new HashMap<>(), task.getElapsedMillis());
 	}
 
 	/**
 	 * Builds a list of Callable tasks corresponding to the task of evaluating each student submission.
 	 * @param submissions An array containing the directory of each student's submission.
 	 * @param tester The {@link Tester} class to use for submission testing and validation.
-	 * @return A list of all callable tasks. See also: {@link ExecutorService#invokeAll(Collection)}.
+	 * @param quota The resource quota for each submission.
+	 * @param parallelism How many of each submission's tests may run at the same time.
+	 * @return A list of all callable tasks. See also: {@link CompletionService#submit(Callable)}.
 	 */
-	private static List<Callable<Tester>> getEvaluationTasks(Map<File, Submission> submissions, Class<? extends Tester> tester, ProgressBar progress) {
-		List<Callable<Tester>> tasks = new ArrayList<>();
+	private static List<Runnable> getEvaluationTasks(Map<File, Submission> submissions, Class<? extends Tester> tester, ProgressBar progress, ResourceQuota quota, int parallelism) {
+		List<Runnable> tasks = new ArrayList<>();
 		for (File subDir : submissions.keySet()) {
 			if (subDir.isDirectory()) {
-				tasks.add(new Runnable(submissions.get(subDir), tester, progress));
+				tasks.add(new Runnable(submissions.get(subDir), tester, progress, quota, parallelism));
 			}
 		}
 		return tasks;
@@ -0,0 +1,390 @@
+package evaluator;
+
+import extensions.Extensions;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates random test inputs for property-based tests. See also: {@link Tester#assertForAll(String, Generator, Tester.Property)}.
+ * <p>
+ * Inputs grow with a size parameter (e.g. an array's length or a graph's number of vertices), so the first cases
+ * are small and edge-casey and the last ones are large. When a property fails, the generator proposes simpler
+ * inputs to try instead ({@link #shrink(Object)}), until no simpler input fails; the smallest failing input is what
+ * gets reported.
+ * <p>
+ * Arrays are generated as primitive arrays, so no boxing happens unless the tested code needs boxed values
+ * (see {@link #boxed(int[])}). The cases of a property are generated once per seed and reused by every submission;
+ * each submission gets its own copies. They are kept per tester class until released (see {@link #release(Class)}),
+ * e.g. at the end of a run.
+ *
+ * @author Afonso Caniço
+ */
+public abstract class Generator<T> {
+
+    private record Key(Class<?> tester, String name, Class<?> generator, long seed, int count, int maxSize) { }
+
+    private static final Map<Key, List<?>> CASES = new ConcurrentHashMap<>();
+
+    private static final int MAX_ELEMENT_SHRINKS = 32; // Elements of a collection considered for shrinking
+
+    /**
+     * Generates a random value.
+     * @param random The random number generator to draw from.
+     * @param size Upper bound on the value's size, e.g. an array's length. Grows from 0 across the cases.
+     * @return A new value.
+     */
+    public abstract T generate(SplittableRandom random, int size);
+
+    /**
+     * Simpler values to try instead of a value that falsified a property, most aggressive first (e.g. an empty array
+     * before an array with a single element removed).
+     * @param value The failing value.
+     * @return The candidates, possibly none. None by default.
+     */
+    public List<T> shrink(T value) {
+        return List.of();
+    }
+
+    /**
+     * A copy of a value, to be handed to student code without affecting the cached original. By default, the value
+     * itself, which is only correct for immutable values.
+     */
+    public T copy(T value) {
+        return value;
+    }
+
+    public String describe(T value) {
+        return Extensions.toStringOrDefault(value);
+    }
+
+    /**
+     * The cases of a property, generated once per seed (see {@link Fixtures#setSeed(long)}) and shared by every
+     * submission. Properties of the same tester with the same name must use the same generator.
+     * @param tester The tester class the property belongs to.
+     * @param name The property's name.
+     * @param generator The generator.
+     * @param count The number of cases.
+     * @param maxSize The size of the last (largest) case.
+     * @return The cases, from smallest to largest. Must not be modified; hand out {@link #copy(Object)}s.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> cases(Class<?> tester, String name, Generator<T> generator, int count, int maxSize) {
+        long seed = Fixtures.getSeed();
+        Key key = new Key(tester, name, generator.getClass(), seed, count, maxSize);
+        return (List<T>) CASES.computeIfAbsent(key, k -> {
+            SplittableRandom random = new SplittableRandom(seed ^ (name.hashCode() * 0x9E3779B97F4A7C15L));
+            List<T> cases = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                cases.add(generator.generate(random, count > 1 ? (int) ((long) maxSize * i / (count - 1)) : maxSize));
+            return Collections.unmodifiableList(cases);
+        });
+    }
+
+    /**
+     * Forgets the cases generated for a tester's properties, so they don't outlive the evaluation that needed them,
+     * e.g. in a long-running process. They are generated again if needed.
+     * @param tester The tester class.
+     */
+    public static void release(Class<?> tester) {
+        CASES.keySet().removeIf(key -> key.tester() == tester);
+    }
+
+    /**
+     * A boxed copy of an array, for code that expects an <code>Integer[]</code>.
+     */
+    public static Integer[] boxed(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; i++)
+            boxed[i] = values[i];
+        return boxed;
+    }
+
+    /**
+     * Integers between min (inclusive) and max (exclusive), no further from 0 (or the closest bound) than the size.
+     * Shrinks towards 0.
+     */
+    public static Generator<Integer> ints(int min, int max) {
+        if (min >= max)
+            throw new IllegalArgumentException("Empty range: [" + min + ", " + max + ")");
+        int target = Math.clamp(0, min, max - 1);
+        return new Generator<>() {
+            @Override
+            public Integer generate(SplittableRandom random, int size) {
+                long low = Math.max(min, (long) target - size);
+                long high = Math.min(max, (long) target + size + 1);
+                return (int) random.nextLong(low, high);
+            }
+
+            @Override
+            public List<Integer> shrink(Integer value) {
+                return shrinkInt(value, target);
+            }
+        };
+    }
+
+    /**
+     * Arrays of integers between min (inclusive) and max (exclusive), of any length up to the size. Shrinks by
+     * removing elements, then by moving elements towards 0 (or the closest bound).
+     */
+    public static Generator<int[]> intArrays(int min, int max) {
+        if (min >= max)
+            throw new IllegalArgumentException("Empty range: [" + min + ", " + max + ")");
+        int target = Math.clamp(0, min, max - 1);
+        return new Generator<>() {
+            @Override
+            public int[] generate(SplittableRandom random, int size) {
+                int[] array = new int[random.nextInt(size + 1)];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = random.nextInt(min, max);
+                return array;
+            }
+
+            @Override
+            public List<int[]> shrink(int[] value) {
+                List<int[]> candidates = new ArrayList<>();
+                for (int[] range : removals(value.length)) {
+                    int[] shorter = new int[value.length - (range[1] - range[0])];
+                    System.arraycopy(value, 0, shorter, 0, range[0]);
+                    System.arraycopy(value, range[1], shorter, range[0], value.length - range[1]);
+                    candidates.add(shorter);
+                }
+                for (int i = 0; i < Math.min(value.length, MAX_ELEMENT_SHRINKS); i++) {
+                    for (int simpler : shrinkInt(value[i], target)) {
+                        int[] candidate = value.clone();
+                        candidate[i] = simpler;
+                        candidates.add(candidate);
+                    }
+                }
+                return candidates;
+            }
+
+            @Override
+            public int[] copy(int[] value) {
+                return value.clone();
+            }
+
+            @Override
+            public String describe(int[] value) {
+                return Arrays.toString(value);
+            }
+        };
+    }
+
+    /**
+     * Strings of characters of the alphabet, of any length up to the size. Shrinks by removing characters, then by
+     * replacing characters with the alphabet's first.
+     */
+    public static Generator<String> strings(String alphabet) {
+        if (alphabet.isEmpty())
+            throw new IllegalArgumentException("Empty alphabet");
+        return new Generator<>() {
+            @Override
+            public String generate(SplittableRandom random, int size) {
+                char[] chars = new char[random.nextInt(size + 1)];
+                for (int i = 0; i < chars.length; i++)
+                    chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+                return new String(chars);
+            }
+
+            @Override
+            public List<String> shrink(String value) {
+                List<String> candidates = new ArrayList<>();
+                for (int[] range : removals(value.length()))
+                    candidates.add(value.substring(0, range[0]) + value.substring(range[1]));
+                for (int i = 0; i < Math.min(value.length(), MAX_ELEMENT_SHRINKS); i++) {
+                    if (value.charAt(i) != alphabet.charAt(0))
+                        candidates.add(value.substring(0, i) + alphabet.charAt(0) + value.substring(i + 1));
+                }
+                return candidates;
+            }
+
+            @Override
+            public String describe(String value) {
+                return "\"" + value + "\"";
+            }
+        };
+    }
+
+    /**
+     * Lists of elements of the given generator, of any length up to the size. Shrinks by removing elements, then by
+     * shrinking elements.
+     */
+    public static <E> Generator<List<E>> lists(Generator<E> elements) {
+        return new Generator<>() {
+            @Override
+            public List<E> generate(SplittableRandom random, int size) {
+                int length = random.nextInt(size + 1);
+                List<E> list = new ArrayList<>(length);
+                for (int i = 0; i < length; i++)
+                    list.add(elements.generate(random, size));
+                return list;
+            }
+
+            @Override
+            public List<List<E>> shrink(List<E> value) {
+                List<List<E>> candidates = new ArrayList<>();
+                for (int[] range : removals(value.size())) {
+                    List<E> shorter = new ArrayList<>(value.subList(0, range[0]));
+                    shorter.addAll(value.subList(range[1], value.size()));
+                    candidates.add(shorter);
+                }
+                for (int i = 0; i < Math.min(value.size(), MAX_ELEMENT_SHRINKS); i++) {
+                    for (E simpler : elements.shrink(value.get(i))) {
+                        List<E> candidate = new ArrayList<>(value);
+                        candidate.set(i, simpler);
+                        candidates.add(candidate);
+                    }
+                }
+                return candidates;
+            }
+
+            @Override
+            public List<E> copy(List<E> value) {
+                List<E> copy = new ArrayList<>(value.size());
+                for (E element : value)
+                    copy.add(elements.copy(element));
+                return copy;
+            }
+
+            @Override
+            public String describe(List<E> value) {
+                StringJoiner s = new StringJoiner(", ", "[", "]");
+                for (E element : value)
+                    s.add(elements.describe(element));
+                return s.toString();
+            }
+        };
+    }
+
+    /**
+     * Graphs as adjacency lists: <code>graph[u]</code> holds the vertices adjacent to <code>u</code>, in increasing
+     * order, without self-loops or parallel edges. Graphs have any number of vertices up to the size. Shrinks by
+     * removing vertices, then edges.
+     * @param directed Are edges directed? If not, every edge appears in the lists of both its vertices.
+     * @param density The probability of each edge being present, between 0 and 1.
+     */
+    public static Generator<int[][]> graphs(boolean directed, double density) {
+        if (density < 0.0 || density > 1.0)
+            throw new IllegalArgumentException("Edge density must be between 0 and 1: " + density);
+        return new Generator<>() {
+            @Override
+            public int[][] generate(SplittableRandom random, int size) {
+                int vertices = random.nextInt(size + 1);
+                boolean[][] edges = new boolean[vertices][vertices];
+                for (int u = 0; u < vertices; u++) {
+                    for (int v = directed ? 0 : u + 1; v < vertices; v++) {
+                        if (u != v && random.nextDouble() < density) {
+                            edges[u][v] = true;
+                            if (!directed)
+                                edges[v][u] = true;
+                        }
+                    }
+                }
+                return adjacency(edges);
+            }
+
+            @Override
+            public List<int[][]> shrink(int[][] value) {
+                List<int[][]> candidates = new ArrayList<>();
+                boolean[][] edges = matrix(value);
+                for (int removed = value.length - 1; removed >= 0; removed--) { // Last vertices first, no renumbering
+                    boolean[][] smaller = new boolean[value.length - 1][value.length - 1];
+                    for (int u = 0, i = 0; u < value.length; u++) {
+                        if (u == removed)
+                            continue;
+                        for (int v = 0, j = 0; v < value.length; v++) {
+                            if (v != removed)
+                                smaller[i][j++] = edges[u][v];
+                        }
+                        i++;
+                    }
+                    candidates.add(adjacency(smaller));
+                }
+                for (int u = 0; u < value.length; u++) {
+                    for (int v : value[u]) {
+                        if (!directed && v < u)
+                            continue; // Already removed from the other end
+                        boolean[][] fewer = matrix(value);
+                        fewer[u][v] = false;
+                        if (!directed)
+                            fewer[v][u] = false;
+                        candidates.add(adjacency(fewer));
+                    }
+                }
+                return candidates;
+            }
+
+            @Override
+            public int[][] copy(int[][] value) {
+                int[][] copy = new int[value.length][];
+                for (int u = 0; u < value.length; u++)
+                    copy[u] = value[u].clone();
+                return copy;
+            }
+
+            @Override
+            public String describe(int[][] value) {
+                return Arrays.deepToString(value);
+            }
+        };
+    }
+
+    private static int[][] adjacency(boolean[][] edges) {
+        int[][] graph = new int[edges.length][];
+        for (int u = 0; u < edges.length; u++) {
+            int degree = 0;
+            for (boolean edge : edges[u])
+                degree += edge ? 1 : 0;
+            graph[u] = new int[degree];
+            for (int v = 0, i = 0; v < edges.length; v++) {
+                if (edges[u][v])
+                    graph[u][i++] = v;
+            }
+        }
+        return graph;
+    }
+
+    private static boolean[][] matrix(int[][] graph) {
+        boolean[][] edges = new boolean[graph.length][graph.length];
+        for (int u = 0; u < graph.length; u++) {
+            for (int v : graph[u])
+                edges[u][v] = true;
+        }
+        return edges;
+    }
+
+    /**
+     * Ranges of elements to remove from a collection, as {from, to} pairs: everything, each half, then each element.
+     */
+    private static List<int[]> removals(int length) {
+        List<int[]> ranges = new ArrayList<>();
+        if (length == 0)
+            return ranges;
+        ranges.add(new int[] { 0, length });
+        if (length > 2) {
+            ranges.add(new int[] { length / 2, length });
+            ranges.add(new int[] { 0, length / 2 });
+        }
+        if (length > 1) {
+            for (int i = length - 1; i >= 0; i--)
+                ranges.add(new int[] { i, i + 1 });
+        }
+        return ranges;
+    }
+
+    /**
+     * Integers between the target and a value, closest to the target first.
+     */
+    private static List<Integer> shrinkInt(int value, int target) {
+        List<Integer> candidates = new ArrayList<>();
+        long distance = (long) value - target;
+        while (distance != 0) {
+            int candidate = (int) (value - distance);
+            if (candidates.isEmpty() || candidates.getLast() != candidate)
+                candidates.add(candidate);
+            distance /= 2;
+        }
+        return candidates;
+    }
+}
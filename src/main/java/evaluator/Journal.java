@@ -0,0 +1,217 @@
+package evaluator;
+
+import com.google.gson.*;
+import evaluator.annotations.Test;
+import evaluator.messages.Result;
+import extensions.Console;
+import reflection.Reflector;
+import reflection.ResourceUsage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Append-only checkpoint journal of an evaluation run. Each submission's report entry is appended as a single line
+ * of JSON as soon as its evaluation finishes, so an interrupted run can be resumed by evaluating only the submissions
+ * missing from the journal. A partially written last line (e.g. from a crash) is ignored when reading.
+ * <p>
+ * Results are recorded by their error code, outcome and message, which is everything reports and grading need.
+ *
+ * @author Afonso Caniço
+ */
+public class Journal {
+
+    private static final Gson GSON = new Gson();
+
+    private final File file;
+
+    private final Map<Test, String> testNames = new HashMap<>();
+
+    private final Map<String, Test> tests = new HashMap<>();
+
+    /**
+     * @param file The journal file, or null if the journal is only used to encode and decode entries.
+     * @param tester The tester class whose results are recorded, used to identify each test by its method name.
+     */
+    public Journal(File file, Class<? extends Tester> tester) {
+        this.file = file;
+        for (java.lang.reflect.Method method : Reflector.getAnnotatedMethods(tester, Test.class)) {
+            Test test = method.getAnnotation(Test.class);
+            testNames.putIfAbsent(test, method.getName());
+            tests.putIfAbsent(method.getName(), test);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Discards every recorded entry.
+     */
+    public synchronized void clear() throws IOException {
+        java.nio.file.Files.write(file.toPath(), new byte[0]);
+    }
+
+    /**
+     * Records a report entry at the end of the journal.
+     * @param entry The report entry.
+     */
+    public synchronized void append(Report.Entry entry) throws IOException {
+        String line = GSON.toJson(toJson(entry)) + System.lineSeparator();
+        java.nio.file.Files.writeString(file.toPath(), line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Reads every complete entry recorded in the journal, in the order they were recorded. If a submission was
+     * recorded more than once, only its latest entry is kept.
+     * @return The recorded report entries, or an empty list if the journal doesn't exist.
+     */
+    public synchronized List<Report.Entry> read() throws IOException {
+        Map<String, Report.Entry> entries = new LinkedHashMap<>();
+        if (!file.exists())
+            return new ArrayList<>();
+
+        try (BufferedReader reader = java.nio.file.Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                try {
+                    Report.Entry entry = fromJson(JsonParser.parseString(line).getAsJsonObject());
+                    entries.remove(entry.getSubmission().getName());
+                    entries.put(entry.getSubmission().getName(), entry);
+                } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+                    Console.warning("Ignoring incomplete journal entry in " + file.getPath());
+                }
+            }
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Reads every complete entry recorded in the journal and rewrites it with only those entries, so that new entries
+     * aren't appended to a partially written line.
+     * @return The recorded report entries. See also: {@link #read()}.
+     */
+    public synchronized List<Report.Entry> recover() throws IOException {
+        List<Report.Entry> entries = read();
+        StringBuilder contents = new StringBuilder();
+        for (Report.Entry entry : entries)
+            contents.append(GSON.toJson(toJson(entry))).append(System.lineSeparator());
+        java.nio.file.Files.writeString(file.toPath(), contents, StandardCharsets.UTF_8);
+        return entries;
+    }
+
+    /**
+     * Converts a report entry to its journal representation.
+     * @param entry The report entry.
+     * @return The entry as a JSON object.
+     */
+    public JsonObject toJson(Report.Entry entry) {
+        JsonObject obj = new JsonObject();
+
+        Submission submission = entry.getSubmission();
+        JsonObject sub = new JsonObject();
+        sub.addProperty("directory", submission.getDirectory().getPath());
+        sub.addProperty("name", submission.getName());
+        sub.addProperty("id", submission.getID());
+        JsonArray expected = new JsonArray();
+        for (String name : submission.getExpectedFiles())
+            expected.add(name);
+        sub.add("expected", expected);
+        obj.add("submission", sub);
+
+        obj.addProperty("grade", entry.getGrade());
+        obj.addProperty("elapsedMillis", entry.getElapsedMillis());
+
+        JsonArray results = new JsonArray();
+        for (Map.Entry<Test, List<Result>> test : entry.getResults().entrySet()) {
+            for (Result result : test.getValue()) {
+                JsonObject res = new JsonObject();
+                res.addProperty("test", testNames.get(test.getKey()));
+                res.addProperty("errorCode", result.errorCode());
+                res.addProperty("passed", result.passed());
+                res.addProperty("message", result.getMessage());
+                results.add(res);
+            }
+            if (test.getValue().isEmpty()) { // Keep tests without results, they still count towards the maximum grade
+                JsonObject res = new JsonObject();
+                res.addProperty("test", testNames.get(test.getKey()));
+                results.add(res);
+            }
+        }
+        obj.add("results", results);
+
+        JsonArray usage = new JsonArray();
+        for (Map.Entry<Test, ResourceUsage> test : entry.getUsage().entrySet()) {
+            JsonObject u = new JsonObject();
+            u.addProperty("test", testNames.get(test.getKey()));
+            u.addProperty("allocatedBytes", test.getValue().getAllocatedBytes());
+            u.addProperty("cpuTime", test.getValue().getCpuTime());
+            u.addProperty("invocations", test.getValue().getInvocations());
+            usage.add(u);
+        }
+        obj.add("usage", usage);
+
+        return obj;
+    }
+
+    /**
+     * Restores a report entry from its journal representation.
+     * @param obj The entry as a JSON object.
+     * @return The report entry.
+     */
+    public Report.Entry fromJson(JsonObject obj) {
+        JsonObject sub = obj.getAsJsonObject("submission");
+        List<String> expected = new ArrayList<>();
+        for (JsonElement name : sub.getAsJsonArray("expected"))
+            expected.add(name.getAsString());
+        Submission submission = new Submission(
+                new File(sub.get("directory").getAsString()),
+                sub.get("name").getAsString(),
+                sub.get("id").getAsLong(),
+                expected
+        );
+        return fromJson(obj, submission);
+    }
+
+    /**
+     * Restores a report entry from its journal representation, for a known submission. Useful when the recorded
+     * submission directory isn't available locally, e.g. when the entry was evaluated on another machine.
+     * @param obj The entry as a JSON object.
+     * @param submission The submission the entry belongs to.
+     * @return The report entry.
+     */
+    public Report.Entry fromJson(JsonObject obj, Submission submission) {
+
+        Map<Test, List<Result>> results = new HashMap<>();
+        for (JsonElement element : obj.getAsJsonArray("results")) {
+            JsonObject res = element.getAsJsonObject();
+            Test test = getTest(res);
+            List<Result> list = results.computeIfAbsent(test, t -> new ArrayList<>());
+            if (res.has("errorCode"))
+                list.add(Result.restored(test, res.get("errorCode").getAsString(), res.get("passed").getAsBoolean(), getString(res, "message")));
+        }
+
+        Map<Test, ResourceUsage> usage = new HashMap<>();
+        for (JsonElement element : obj.getAsJsonArray("usage")) {
+            JsonObject u = element.getAsJsonObject();
+            usage.put(getTest(u), new ResourceUsage(u.get("allocatedBytes").getAsLong(), u.get("cpuTime").getAsLong(), u.get("invocations").getAsInt()));
+        }
+
+        return new Report.Entry(submission, results, obj.get("grade").getAsDouble(), usage, obj.get("elapsedMillis").getAsLong());
+    }
+
+    private Test getTest(JsonObject obj) {
+        String name = getString(obj, "test");
+        return name == null ? null : tests.get(name);
+    }
+
+    private static String getString(JsonObject obj, String member) {
+        JsonElement element = obj.get(member);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+}
@@ -0,0 +1,214 @@
+package evaluator;
+
+import com.google.gson.*;
+import extensions.Console;
+import evaluator.messages.Result;
+import extensions.Files;
+import loading.ClassFiles;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Record of a previous evaluation run, used to evaluate only what changed since. Pairs each submission's report
+ * entry with a hash of its source code files, a hash of the tester's bytecode, a hash of the evaluator library itself,
+ * and each test's {@link Fingerprints fingerprint}. Entries are reused as a whole while all hashes match; if only some
+ * tests changed, the results of the others can be reused and only the changed tests run again.
+ * <p>
+ * Transient results (see {@link Result#isTransient()}), e.g. timeouts, are never reused: the tests they belong to
+ * run again, and so does the whole submission if they concern it as a whole or aborted its evaluation.
+ * <p>
+ * Stored as one line of JSON per submission, with entries encoded as in the {@link Journal}.
+ *
+ * @author Afonso Caniço
+ */
+public class Manifest {
+
+    private static final Gson GSON = new Gson();
+
+    private static final String QUOTA_EXCEEDED_ERROR_CODE = "Resource Quota Exceeded"; // Aborts the remaining tests
+
+    private final File file;
+
+    private final Journal codec;
+
+    private final String testerHash;
+
+    private final String libraryHash;
+
+    private final Fingerprints fingerprints;
+
+    private final Map<String, JsonObject> previous = new HashMap<>(); // By submission name
+
+    /**
+     * Reads the manifest of a previous run, if any.
+     * @param file The manifest file.
+     * @param tester The tester class of the current run.
+     */
+    public Manifest(File file, Class<? extends Tester> tester) throws IOException {
+        this.file = file;
+        this.codec = new Journal(null, tester);
+        this.testerHash = ClassFiles.hash(ClassFiles.read(tester, Tester.class));
+        this.libraryHash = ClassFiles.hashLibrary(Tester.class);
+        this.fingerprints = new Fingerprints(tester);
+        if (!file.exists())
+            return;
+
+        try (BufferedReader reader = java.nio.file.Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                try {
+                    JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+                    previous.put(record.getAsJsonObject("entry").getAsJsonObject("submission").get("name").getAsString(), record);
+                } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+                    Console.warning("Ignoring malformed manifest entry in " + file.getPath());
+                }
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getTesterHash() {
+        return testerHash;
+    }
+
+    public String getLibraryHash() {
+        return libraryHash;
+    }
+
+    /**
+     * Hashes a submission's source code files. Must be computed before the evaluation cleans them.
+     * @param submission The submission.
+     * @return The hexadecimal SHA-256 digest of the submission's .java files.
+     */
+    public static String getContentHash(Submission submission) throws IOException {
+        return Files.hash(submission.getDirectory(), "java");
+    }
+
+    /**
+     * Finds the entry of a previous run that can be reused for a submission.
+     * @param submission The submission.
+     * @param contentHash The submission's current content hash. See also: {@link #getContentHash(Submission)}.
+     * @return The previous report entry, or null if the submission's sources, the tester or the evaluator library
+     * changed since, or if some of its results were transient.
+     */
+    public Report.Entry reuse(Submission submission, String contentHash) {
+        JsonObject record = previous.get(submission.getName());
+        if (record == null)
+            return null;
+        try {
+            if (!contentHash.equals(record.get("contentHash").getAsString()) || !testerHash.equals(record.get("testerHash").getAsString())
+                    || !libraryHash.equals(record.get("libraryHash").getAsString()) || !record.get("complete").getAsBoolean())
+                return null;
+            return codec.fromJson(record.getAsJsonObject("entry"), submission);
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the results of a previous run that can be reused for a submission, for those tests that didn't change.
+     * @param submission The submission.
+     * @param contentHash The submission's current content hash. See also: {@link #getContentHash(Submission)}.
+     * @return A partial report entry with the results and resource usage of the unchanged tests, or null if the
+     * submission's sources changed or no test can be reused.
+     */
+    public Report.Entry reuseTests(Submission submission, String contentHash) {
+        JsonObject record = previous.get(submission.getName());
+        if (record == null)
+            return null;
+        try {
+            if (!contentHash.equals(record.get("contentHash").getAsString()) || !record.has("fingerprints"))
+                return null;
+
+            // Keep only the tests whose fingerprint is the same
+            JsonObject recorded = record.getAsJsonObject("fingerprints");
+            Set<String> unchanged = new HashSet<>();
+            for (Map.Entry<String, String> test : fingerprints.getAll().entrySet()) {
+                JsonElement fingerprint = recorded.get(test.getKey());
+                if (fingerprint != null && fingerprint.getAsString().equals(test.getValue()))
+                    unchanged.add(test.getKey());
+            }
+            if (unchanged.isEmpty())
+                return null;
+
+            JsonObject entry = record.getAsJsonObject("entry").deepCopy();
+            entry.add("results", filter(entry.getAsJsonArray("results"), unchanged));
+            entry.add("usage", filter(entry.getAsJsonArray("usage"), unchanged));
+            return codec.fromJson(entry, submission);
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the tests of an entry with a transient result.
+     * @param entry The entry, encoded as in the {@link Journal}.
+     * @return The tests' names, or null if a transient result concerns the whole submission or aborted its
+     * evaluation (an exceeded quota), so none of its results can be reused.
+     */
+    private static Set<String> getTransientTests(JsonObject entry) {
+        Set<String> tests = new HashSet<>();
+        for (JsonElement result : entry.getAsJsonArray("results")) {
+            JsonObject res = result.getAsJsonObject();
+            if (!res.has("errorCode") || !Result.isTransient(res.get("errorCode").getAsString()))
+                continue;
+            JsonElement test = res.get("test");
+            if (test == null || test.isJsonNull() || res.get("errorCode").getAsString().equals(QUOTA_EXCEEDED_ERROR_CODE))
+                return null;
+            tests.add(test.getAsString());
+        }
+        return tests;
+    }
+
+    private static JsonArray filter(JsonArray tests, Set<String> names) {
+        JsonArray filtered = new JsonArray();
+        for (JsonElement test : tests) {
+            JsonElement name = test.getAsJsonObject().get("test");
+            if (name != null && !name.isJsonNull() && names.contains(name.getAsString()))
+                filtered.add(test);
+        }
+        return filtered;
+    }
+
+    /**
+     * Replaces the manifest with the entries of the current run. Transient results aren't recorded: entries whose
+     * evaluation as a whole failed transiently are left out, and so are the fingerprints of tests with a transient
+     * result, so those tests run again next time.
+     * @param report The current run's report.
+     * @param contentHashes Each submission's content hash, by submission directory.
+     */
+    public void write(Report report, Map<File, String> contentHashes) throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (Report.Entry entry : report) {
+            String contentHash = contentHashes.get(entry.getSubmission().getDirectory());
+            if (contentHash == null)
+                continue;
+            JsonObject encoded = codec.toJson(entry);
+            Set<String> unsettled = getTransientTests(encoded);
+            if (unsettled == null)
+                continue;
+
+            JsonObject record = new JsonObject();
+            record.addProperty("contentHash", contentHash);
+            record.addProperty("testerHash", testerHash);
+            record.addProperty("libraryHash", libraryHash);
+            record.addProperty("complete", unsettled.isEmpty());
+            JsonObject tests = new JsonObject();
+            for (Map.Entry<String, String> test : fingerprints.getAll().entrySet()) {
+                if (!unsettled.contains(test.getKey()))
+                    tests.addProperty(test.getKey(), test.getValue());
+            }
+            record.add("fingerprints", tests);
+            record.add("entry", encoded);
+            contents.append(GSON.toJson(record)).append(System.lineSeparator());
+        }
+        java.nio.file.Files.writeString(file.toPath(), contents, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,265 @@
+package evaluator;
+
+import evaluator.annotations.Test;
+import extensions.Console;
+import extensions.Files;
+import loading.ClassLoader;
+import loading.ClassLoadingException;
+import loading.CompilationException;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes expected results from the reference implementation, once for every submission. Results are cached by
+ * test, method and arguments, and optionally persisted to a file so that later runs don't compute them again. The
+ * file records a hash of the reference's source code files, and is ignored once they change.
+ * <p>
+ * The reference's source code files are compiled from a temporary copy, so the reference folder is left untouched.
+ * Only results of JDK types (e.g. numbers, strings, arrays of those, JDK collections), computed from arguments of JDK
+ * types, are persisted.
+ *
+ * @author Afonso Caniço
+ */
+public class Oracle {
+
+    /**
+     * The reference implementation threw an exception, so the student's code is expected to throw one of the same type.
+     * @param type The exception's class name.
+     */
+    public record Thrown(String type) implements Serializable { }
+
+    /**
+     * Identifies a call to a reference method by the test it's made in, the method, and the arguments' contents.
+     * Hashed without rendering the arguments, which may be large.
+     */
+    private record Call(String test, String method, Object[] arguments) implements Serializable {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Call other && test.equals(other.test) && method.equals(other.method) &&
+                    Arrays.deepEquals(arguments, other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(test, method, Arrays.deepHashCode(arguments));
+        }
+    }
+
+    private static final Object NULL = new Object(); // Concurrent maps don't allow null values
+
+    private final File reference;
+
+    private final File cache;
+
+    private final Map<Object, Object> expected = new ConcurrentHashMap<>(); // By memo key or Call
+
+    private final Map<String, Class<?>> classes = new HashMap<>();
+
+    private File copy;
+
+    /**
+     * @param reference Folder containing the reference implementation's source code files.
+     */
+    public Oracle(File reference) {
+        this(reference, null);
+    }
+
+    private String referenceHash; // Of the reference's source code files, identifying the cache's results
+
+    /**
+     * @param reference Folder containing the reference implementation's source code files.
+     * @param cache File to persist expected results to, across runs. Can be null. Results computed from a different
+     *              version of the reference implementation are discarded, but the file must still be discarded if
+     *              the values tests pass to {@link #memo(String, Callable)} are computed differently.
+     */
+    public Oracle(File reference, File cache) {
+        this.reference = reference;
+        this.cache = cache;
+        if (cache != null) {
+            try {
+                referenceHash = Files.hash(reference, "java");
+            } catch (IOException e) {
+                Console.warning("Could not hash the reference implementation, so expected results won't be persisted: " + e.getMessage());
+            }
+            if (referenceHash != null && cache.isFile())
+                load();
+        }
+    }
+
+    public File getReference() {
+        return reference;
+    }
+
+    /**
+     * Computes a value once for every submission, e.g. an expected result that requires instantiating reference
+     * classes. Use keys that identify the test and its input.
+     * @param key The value's key.
+     * @param compute Computes the value if it isn't known yet.
+     * @return The value.
+     */
+    public Object memo(String key, Callable<?> compute) throws Exception {
+        return memo((Object) key, compute);
+    }
+
+    private Object memo(Object key, Callable<?> compute) throws Exception {
+        Object value = expected.get(key);
+        if (value == null) {
+            Object computed = compute.call();
+            value = expected.putIfAbsent(key, computed == null ? NULL : computed);
+            if (value == null)
+                value = computed == null ? NULL : computed;
+        }
+        return value == NULL ? null : value;
+    }
+
+    /**
+     * The result of invoking the reference implementation's version of a static method.
+     * @param test The test the method is invoked in. Can be null.
+     * @param method The student's method. The reference's method is the one with the same name and parameter types,
+     *               in the class with the same name.
+     * @param arguments The arguments, which must be of JDK types (or arrays of those).
+     * @return The reference's result, or a {@link Thrown} if the reference threw an exception.
+     */
+    public Object expected(Test test, Method method, Object[] arguments) throws Exception {
+        Call key = new Call(test == null ? "" : test.description(), method.getDeclaringClass().getSimpleName() + "." +
+                method.getName() + Arrays.toString(Arrays.stream(method.getParameterTypes()).map(Class::getName).toArray()), arguments);
+        return memo(key, () -> invoke(method, arguments));
+    }
+
+    private Object invoke(Method method, Object[] arguments) throws Exception {
+        if (!Modifier.isStatic(method.getModifiers()))
+            throw new UnsupportedOperationException("Only static methods can be invoked on the reference implementation: " + method.getName());
+
+        Method ref = findMethod(getClass(method.getDeclaringClass().getSimpleName()), method);
+        ref.setAccessible(true);
+        Object[] args = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++)
+            args[i] = copy(arguments[i]); // The reference may modify its arguments
+        try {
+            return ref.invoke(null, args);
+        } catch (InvocationTargetException e) {
+            return new Thrown(e.getCause().getClass().getName());
+        }
+    }
+
+    private static Method findMethod(Class<?> type, Method method) throws NoSuchMethodException {
+        String[] parameters = Arrays.stream(method.getParameterTypes()).map(Class::getName).toArray(String[]::new);
+        for (Method candidate : type.getDeclaredMethods()) {
+            String[] candidateParameters = Arrays.stream(candidate.getParameterTypes()).map(Class::getName).toArray(String[]::new);
+            if (candidate.getName().equals(method.getName()) && Arrays.equals(parameters, candidateParameters))
+                return candidate;
+        }
+        throw new NoSuchMethodException("Reference implementation has no method " + type.getName() + "." + method.getName() + Arrays.toString(parameters));
+    }
+
+    /**
+     * Compiles and loads a class of the reference implementation.
+     * @param name The class's simple name.
+     */
+    private synchronized Class<?> getClass(String name) throws IOException, ClassLoadingException, CompilationException {
+        Class<?> type = classes.get(name);
+        if (type != null)
+            return type;
+
+        if (copy == null) {
+            copy = java.nio.file.Files.createTempDirectory("aedeval-reference-").toFile();
+            copy.deleteOnExit();
+            Files.copy(reference, copy);
+        }
+        File source = Files.findDescendant(copy, name + ".java");
+        if (source == null)
+            throw new FileNotFoundException("Reference implementation has no " + name + ".java");
+        type = ClassLoader.load(source, false);
+        classes.put(name, type);
+        return type;
+    }
+
+    private static Object copy(Object argument) {
+        if (argument != null && argument.getClass().isArray()) {
+            int length = java.lang.reflect.Array.getLength(argument);
+            Object array = java.lang.reflect.Array.newInstance(argument.getClass().getComponentType(), length);
+            System.arraycopy(argument, 0, array, 0, length);
+            return array;
+        }
+        return argument;
+    }
+
+    /**
+     * Writes the expected results of JDK types to the cache file, if any. The file is replaced as a whole, so an
+     * error while writing it leaves the previous one intact.
+     */
+    public void save() throws IOException {
+        if (cache == null || referenceHash == null)
+            return;
+        HashMap<Object, Object> persistent = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : expected.entrySet()) {
+            if (entry.getKey() instanceof Call call && !isPersistent(call.arguments()))
+                continue;
+            if (entry.getValue() == NULL)
+                persistent.put(entry.getKey(), null);
+            else if (isPersistent(entry.getValue()))
+                persistent.put(entry.getKey(), entry.getValue());
+        }
+        // Write to a temporary file first, so a failure midway never leaves a truncated cache behind
+        Path folder = cache.getAbsoluteFile().getParentFile().toPath();
+        java.nio.file.Files.createDirectories(folder);
+        Path temp = java.nio.file.Files.createTempFile(folder, cache.getName(), ".tmp");
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(java.nio.file.Files.newOutputStream(temp)))) {
+                out.writeUTF(referenceHash);
+                out.writeObject(persistent);
+            }
+            java.nio.file.Files.move(temp, cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NotSerializableException e) {
+            Console.warning("Could not persist expected results to " + cache.getPath() + ": " + e.getMessage());
+        } finally {
+            java.nio.file.Files.deleteIfExists(temp);
+        }
+    }
+
+    private static boolean isPersistent(Object value) {
+        if (value == null || value instanceof Thrown)
+            return true;
+        Iterable<?> elements = switch (value) { // Containers may hold objects of any type
+            case Object[] array -> Arrays.asList(array);
+            case Collection<?> collection -> collection;
+            case Map<?, ?> map -> {
+                List<Object> keysAndValues = new ArrayList<>(map.keySet());
+                keysAndValues.addAll(map.values());
+                yield keysAndValues;
+            }
+            default -> List.of();
+        };
+        for (Object element : elements) {
+            if (!isPersistent(element))
+                return false;
+        }
+        Class<?> type = value.getClass();
+        while (type.isArray())
+            type = type.getComponentType();
+        return value instanceof Serializable && type.getClassLoader() == null; // Loaded by the bootstrap class loader
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(cache)))) {
+            if (!in.readUTF().equals(referenceHash)) {
+                Console.warning("Discarding the expected results in " + cache.getPath() + ": the reference implementation changed");
+                return;
+            }
+            for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) in.readObject()).entrySet())
+                expected.put(entry.getKey(), entry.getValue() == null ? NULL : entry.getValue());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            Console.warning("Ignoring unreadable expected results in " + cache.getPath() + ": " + e.getMessage());
+        }
+    }
+}
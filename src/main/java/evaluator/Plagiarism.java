@@ -0,0 +1,54 @@
+package evaluator;
+
+import de.jplag.JPlag;
+import de.jplag.JPlagResult;
+import de.jplag.exceptions.ExitException;
+import de.jplag.java.JavaLanguage;
+import de.jplag.options.JPlagOptions;
+import extensions.Console;
+import extensions.Extensions;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the plagiarism analysis using JPlag. Kept apart from {@link FullEvaluator} so that JPlag's classes are only
+ * loaded when the analysis actually runs.
+ *
+ * @author Afonso Caniço
+ */
+class Plagiarism {
+
+    /**
+     * @param root Folder containing every submission's folder.
+     * @param reference Folder containing the reference code, which isn't considered plagiarism. Can be null.
+     * @return JPlag's analysis of the submissions.
+     */
+    static JPlagResult check(File root, File reference) {
+        JavaLanguage language = new JavaLanguage();
+        Set<File> submissionDirectories = Set.of(root);
+
+        JPlagOptions options = new JPlagOptions(language, submissionDirectories, Set.of())
+                .withFileSuffixes(List.of("java")) // Include only Java files
+                .withNormalize(true) // Normalise token order
+                .withExclusionFileName(".jplag/exclude.txt");
+
+        Console.warning("JPlag is ignoring the following files: " + Extensions.joinToString(options.excludedFiles()));
+
+        if (reference != null)
+            options = options.withBaseCodeSubmissionDirectory(reference); // Reference code
+
+        try {
+            System.out.println("Running plagiarism analysis using JPlag...");
+            long start = System.currentTimeMillis();
+            JPlagResult result = JPlag.run(options);
+            long end = System.currentTimeMillis();
+            System.out.println("Done! Elapsed time: " + ((end - start) / 1000.0) + " seconds.\n");
+            return result;
+        } catch (ExitException e) {
+            Console.error("Exception thrown when running plagiarism analysis: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -5,9 +5,11 @@ import de.jplag.JPlagResult;
 import evaluator.annotations.Test;
 import evaluator.messages.Result;
 import extensions.DisjointSet;
+import reflection.ResourceUsage;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Report implements Iterable<Report.Entry>, Serializable {
 
@@ -19,10 +21,24 @@ public class Report implements Iterable<Report.Entry>, Serializable {
 
         private final double grade;
 
+        private final Map<Test, ResourceUsage> usage;
+
+        private final long elapsedMillis;
+
         public Entry(Submission submission, Map<Test, List<Result>> results, double grade) {
+            this(submission, results, grade, new HashMap<>());
+        }
+
+        public Entry(Submission submission, Map<Test, List<Result>> results, double grade, Map<Test, ResourceUsage> usage) {
+            this(submission, results, grade, usage, 0L);
+        }
+
+        public Entry(Submission submission, Map<Test, List<Result>> results, double grade, Map<Test, ResourceUsage> usage, long elapsedMillis) {
             this.submission = submission;
             this.results = results;
             this.grade = grade;
+            this.usage = usage;
+            this.elapsedMillis = elapsedMillis;
         }
 
         public Submission getSubmission() {
@@ -37,6 +53,33 @@ public class Report implements Iterable<Report.Entry>, Serializable {
             return grade;
         }
 
+        /**
+         * How long did the submission's evaluation take?
+         * @return The evaluation's wall-clock time in milliseconds, or 0 if unknown.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Resources consumed by the submission's code, per test.
+         * @return A map pairing each test with the bytes allocated and CPU time consumed by its invocations.
+         */
+        public Map<Test, ResourceUsage> getUsage() {
+            return usage;
+        }
+
+        /**
+         * Resources consumed by the submission's code across all tests.
+         * @return The total bytes allocated and CPU time consumed by the submission.
+         */
+        public ResourceUsage getTotalUsage() {
+            ResourceUsage total = new ResourceUsage();
+            for (ResourceUsage u : usage.values())
+                total.add(u);
+            return total;
+        }
+
         public Map<String, Integer> getErrorCountPerCode() {
             Map<String, Integer> map = new HashMap<>();
             for (Test test : results.keySet()) {
@@ -84,22 +127,22 @@ public class Report implements Iterable<Report.Entry>, Serializable {
     private Iterable<Set<de.jplag.Submission>> equalCodeClusters;
 
     public Report() {
-        this.entries = new ArrayList<>();
+        this.entries = new CopyOnWriteArrayList<>();
         this.description = "";
     }
 
     public Report(String description) {
-        this.entries = new ArrayList<>();
+        this.entries = new CopyOnWriteArrayList<>();
         this.description = description;
     }
 
     public Report(String description, List<Entry> entries) {
-        this.entries = new ArrayList<>(entries);
+        this.entries = new CopyOnWriteArrayList<>(entries);
         this.description = description;
     }
 
     public Report(String description, List<Entry> entries, JPlagResult plagiarismAnalysis) {
-        this.entries = new ArrayList<>(entries);
+        this.entries = new CopyOnWriteArrayList<>(entries);
         this.description = description;
         setPlagiarismAnalysis(plagiarismAnalysis);
     }
@@ -108,6 +151,31 @@ public class Report implements Iterable<Report.Entry>, Serializable {
         entries.add(new Entry(submission, results, grade));
     }
 
+    void add(Submission submission, Map<Test, List<Result>> results, double grade, Map<Test, ResourceUsage> usage) {
+        entries.add(new Entry(submission, results, grade, usage));
+    }
+
+    void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    /**
+     * Replaces the entry of the same submission (i.e. with the same directory), or adds it if there is none.
+     * @param entry The submission's new entry.
+     */
+    synchronized void replace(Entry entry) {
+        remove(entry.getSubmission().getDirectory());
+        entries.add(entry);
+    }
+
+    /**
+     * Removes the entry of a submission, if any.
+     * @param directory The submission's directory.
+     */
+    synchronized void remove(File directory) {
+        entries.removeIf(entry -> entry.getSubmission().getDirectory().getAbsoluteFile().equals(directory.getAbsoluteFile()));
+    }
+
     public String getDescription() {
         return description;
     }
@@ -173,7 +241,7 @@ public class Report implements Iterable<Report.Entry>, Serializable {
         for (Entry entry : entries) {
             System.out.printf("[%f] %s\n", entry.grade, entry.submission.getName());
             for (Test test : entry.results.keySet()) {
-                System.out.printf("\t➤ %s\n", test.description());
+                System.out.printf("\t➤ %s\n", test == null ? "Submission" : test.description());
                 for (Result result : entry.results.get(test))
                     System.out.printf("\t\t• %s\n", result.getMessage());
             }
@@ -1,31 +1,111 @@
 package evaluator;
 
 import extensions.ProgressBar;
+import reflection.Reflector;
+import reflection.ResourceQuota;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 public class Runnable implements Callable<Tester> {
     private final Submission submission;
     private final Class<? extends Tester> tester;
     private final ProgressBar progress;
+    private final ResourceQuota quota;
+    private final int parallelism;
+    private Report.Entry reused;
+    private Oracle oracle;
+    private Reflector.InvocationMode invocationMode = Reflector.InvocationMode.HANDOFF;
+    private volatile long started = 0L;
+    private volatile long finished = 0L;
 
     public Runnable(Submission submission, Class<? extends Tester> tester, ProgressBar progress) {
+        this(submission, tester, progress, ResourceQuota.UNLIMITED);
+    }
+
+    public Runnable(Submission submission, Class<? extends Tester> tester, ProgressBar progress, ResourceQuota quota) {
+        this(submission, tester, progress, quota, 1);
+    }
+
+    /**
+     * @param parallelism How many of the submission's tests may run at the same time. See also:
+     *                    {@link Tester#setParallelism(int)}.
+     */
+    public Runnable(Submission submission, Class<? extends Tester> tester, ProgressBar progress, ResourceQuota quota, int parallelism) {
         this.submission = submission;
         this.tester = tester;
         this.progress = progress;
+        this.quota = quota;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Reuses the results of tests evaluated in a previous run, instead of running them again.
+     * @param previous A (partial) report entry with the results to reuse. See also: {@link Manifest#reuseTests}.
+     */
+    public void reuse(Report.Entry previous) {
+        this.reused = previous;
+    }
+
+    /**
+     * Lets the tester compute expected results from the reference implementation. See also: {@link Tester#getOracle()}.
+     * @param oracle The reference implementation's oracle. Can be null.
+     */
+    public void setOracle(Oracle oracle) {
+        this.oracle = oracle;
+    }
+
+    /**
+     * Sets how the tester invokes the submission's code. See also: {@link Reflector#setInvocationMode}.
+     */
+    public void setInvocationMode(Reflector.InvocationMode invocationMode) {
+        this.invocationMode = invocationMode;
+    }
+
+    public Submission getSubmission() {
+        return submission;
+    }
+
+    /**
+     * When did the evaluation start?
+     * @return The {@link System#nanoTime()} at which the evaluation started, or 0 if it hasn't started yet.
+     */
+    public long getStartTime() {
+        return started;
+    }
+
+    /**
+     * How long has the evaluation taken?
+     * @return The evaluation's wall-clock time in milliseconds, up until now if it is still running.
+     */
+    public long getElapsedMillis() {
+        if (started == 0L)
+            return 0L;
+        long end = finished == 0L ? System.nanoTime() : finished;
+        return TimeUnit.NANOSECONDS.toMillis(end - started);
     }
 
     @Override
     public Tester call() {
+        started = System.nanoTime();
         try {
             Tester test = tester.getDeclaredConstructor(Submission.class).newInstance(this.submission);
+            test.setQuota(quota);
+            test.setParallelism(parallelism);
+            test.setOracle(oracle);
+            test.setInvocationMode(invocationMode);
+            if (reused != null)
+                test.reuse(reused.getResults(), reused.getUsage());
             test.runAllTests();
-            progress.step();
+            if (progress != null)
+                progress.step();
             return test;
         } catch (IOException | InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
             e.printStackTrace();
+        } finally {
+            finished = System.nanoTime();
         }
         return null;
     }
@@ -0,0 +1,338 @@
+package evaluator;
+
+import evaluator.annotations.Test;
+import evaluator.messages.Result;
+import extensions.Console;
+import loading.ClassLoader;
+import reflection.ResourceUsage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the evaluation of several assignments (jobs) at the same time on a shared pool of worker threads, e.g. when
+ * several instructors use the same server.
+ * <p>
+ * Jobs are served by priority lane first: a job in a higher lane, such as a single student's regrade, is always
+ * served before the jobs of lower lanes. Within a lane, workers are shared between jobs in proportion to their
+ * weights, using start-time fair queuing on the estimated cost of each submission. See also: {@link CostEstimator}.
+ * Each job keeps its own report, progress and resource usage.
+ * <p>
+ * A submission whose evaluation timed out still counts against the workers until its thread actually stops, so
+ * student code that ignores interruption can't make more submissions run at once than there are workers.
+ *
+ * @author Afonso Caniço
+ */
+public class Scheduler {
+
+    /**
+     * Priority lanes, from highest to lowest.
+     */
+    public enum Priority {
+        INTERACTIVE, NORMAL, BATCH
+    }
+
+    /**
+     * The evaluation of a batch of submissions with a single evaluator.
+     */
+    public class Job {
+
+        private final FullEvaluator<?> evaluator;
+
+        private final Map<File, Submission> submissions;
+
+        private final double weight;
+
+        private final Priority priority;
+
+        private final Deque<Submission> pending = new ArrayDeque<>();
+
+        private final Map<Submission, Double> costs = new HashMap<>();
+
+        private final Report report;
+
+        private final ResourceUsage usage = new ResourceUsage();
+
+        private final AtomicInteger completed = new AtomicInteger();
+
+        private final AtomicLong elapsedMillis = new AtomicLong();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private double tag = 0.0; // Virtual start time of the job's next submission
+
+        private Job(FullEvaluator<?> evaluator, Map<File, Submission> submissions, double weight, Priority priority) {
+            this.evaluator = evaluator;
+            this.submissions = submissions;
+            this.weight = weight;
+            this.priority = priority;
+            this.report = new Report(evaluator.getDescription());
+
+            // Longest first within the job, so its stragglers don't start last
+            CostEstimator estimator = new CostEstimator(evaluator.getHistory());
+            List<Submission> ordered = new ArrayList<>(submissions.values());
+            for (Submission submission : ordered)
+                costs.put(submission, Math.max(1.0, estimator.estimate(submission)));
+            ordered.sort(Comparator.comparing(costs::get, Comparator.reverseOrder()));
+            pending.addAll(ordered);
+        }
+
+        public String getDescription() {
+            return evaluator.getDescription();
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * The job's report. Entries are added as submissions are evaluated.
+         */
+        public Report getReport() {
+            return report;
+        }
+
+        public int getTotal() {
+            return submissions.size();
+        }
+
+        public int getCompleted() {
+            return completed.get();
+        }
+
+        /**
+         * How much of the job is done?
+         * @return The fraction of evaluated submissions, between 0 and 1.
+         */
+        public double getProgress() {
+            return submissions.isEmpty() ? 1.0 : (double) completed.get() / submissions.size();
+        }
+
+        /**
+         * Resources consumed by the code of the job's evaluated submissions.
+         * @return The total bytes allocated and CPU time consumed so far.
+         */
+        public ResourceUsage getUsage() {
+            return new ResourceUsage().add(usage);
+        }
+
+        /**
+         * How much worker time has the job taken?
+         * @return The sum of the evaluation times of the job's evaluated submissions, in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis.get();
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * Waits until every submission of the job is evaluated.
+         * @return The job's report.
+         */
+        public Report await() throws InterruptedException {
+            done.await();
+            return report;
+        }
+
+        /**
+         * Waits at most the given time until every submission of the job is evaluated.
+         * @return The job's report, or null if the job isn't done yet.
+         */
+        public Report await(long timeout, TimeUnit unit) throws InterruptedException {
+            return done.await(timeout, unit) ? report : null;
+        }
+
+        private void record(Report.Entry entry) {
+            report.add(entry);
+            usage.add(entry.getTotalUsage());
+            elapsedMillis.addAndGet(entry.getElapsedMillis());
+            if (evaluator.getListener() != null)
+                evaluator.getListener().accept(entry);
+            if (completed.incrementAndGet() == submissions.size())
+                finish();
+        }
+
+        private void finish() {
+            evaluator.restoreSubmissionCodeFiles(submissions);
+            for (File directory : submissions.keySet()) {
+                try {
+                    ClassLoader.flush(directory);
+                } catch (IOException e) {
+                    Console.warning("Could not close the class loaders of " + directory.getName() + ": " + e.getMessage());
+                }
+            }
+            synchronized (Scheduler.this) {
+                jobs.remove(this);
+                if (jobs.stream().noneMatch(job -> job.evaluator.getTester() == evaluator.getTester()))
+                    Generator.release(evaluator.getTester()); // No other job needs its properties' cases
+            }
+            done.countDown();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s] %s: %d/%d (%.1f%%), %s", priority, getDescription(), getCompleted(), getTotal(), 100 * getProgress(), usage);
+        }
+    }
+
+    private record Task(Job job, Submission submission) { }
+
+    private final Map<Priority, List<Job>> lanes = new EnumMap<>(Priority.class);
+
+    private final List<Job> jobs = new ArrayList<>(); // Not yet done
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private double virtualTime = 0.0;
+
+    private boolean shutdown = false;
+
+    /**
+     * @param threads The number of submissions evaluated at the same time, across all jobs.
+     */
+    public Scheduler(int threads) {
+        for (Priority priority : Priority.values())
+            lanes.put(priority, new ArrayList<>());
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, "scheduler-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Evaluates every submission in the evaluator's root folder, with weight 1 in the normal lane.
+     */
+    public Job submit(FullEvaluator<?> evaluator) {
+        return submit(evaluator, 1.0, Priority.NORMAL);
+    }
+
+    /**
+     * Evaluates every submission in the evaluator's root folder. Submissions are validated and the plagiarism
+     * analysis is run before returning.
+     * @param evaluator The evaluator to evaluate the submissions with.
+     * @param weight The job's share of the workers, relative to the other jobs in the same lane.
+     * @param priority The job's lane.
+     * @return The scheduled job.
+     */
+    public Job submit(FullEvaluator<?> evaluator, double weight, Priority priority) {
+        Map<File, Submission> submissions = evaluator.validateSubmissions();
+        Job job = new Job(evaluator, submissions, weight, priority);
+        if (evaluator.isPlagiarismAnalysisEnabled() && submissions.size() >= 2) // Before the evaluation cleans the code files
+            job.report.setPlagiarismAnalysis(evaluator.checkPlagiarism());
+        return schedule(job);
+    }
+
+    /**
+     * Evaluates the given submissions only, e.g. to regrade a single student. No plagiarism analysis is run.
+     * @param evaluator The evaluator to evaluate the submissions with.
+     * @param submissions The submissions.
+     * @param weight The job's share of the workers, relative to the other jobs in the same lane.
+     * @param priority The job's lane.
+     * @return The scheduled job.
+     */
+    public Job submit(FullEvaluator<?> evaluator, List<Submission> submissions, double weight, Priority priority) {
+        Map<File, Submission> map = new LinkedHashMap<>();
+        for (Submission submission : submissions)
+            map.put(submission.getDirectory(), submission);
+        return schedule(new Job(evaluator, map, weight, priority));
+    }
+
+    /**
+     * The jobs that aren't done yet.
+     */
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    /**
+     * Stops the workers. Submissions being evaluated are interrupted, and pending jobs are never done.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+        for (Thread worker : workers)
+            worker.interrupt();
+    }
+
+    private Job schedule(Job job) {
+        if (job.weight <= 0.0)
+            throw new IllegalArgumentException("Job weight must be positive: " + job.weight);
+        if (job.submissions.isEmpty()) {
+            job.done.countDown();
+            return job;
+        }
+        synchronized (this) {
+            if (shutdown)
+                throw new IllegalStateException("The scheduler was shut down.");
+            job.tag = virtualTime; // A new job doesn't get credit for the time before it arrived
+            jobs.add(job);
+            lanes.get(job.priority).add(job);
+            notifyAll();
+        }
+        return job;
+    }
+
+    /**
+     * Waits for the next submission to evaluate: from the highest lane with pending submissions, the one of the job
+     * with the earliest virtual start time.
+     */
+    private synchronized Task take() throws InterruptedException {
+        while (!shutdown) {
+            for (List<Job> lane : lanes.values()) {
+                Job next = null;
+                for (Job job : lane) {
+                    if (next == null || job.tag < next.tag)
+                        next = job;
+                }
+                if (next != null) {
+                    Submission submission = next.pending.poll();
+                    virtualTime = Math.max(virtualTime, next.tag);
+                    next.tag += next.costs.get(submission) / next.weight;
+                    if (next.pending.isEmpty())
+                        lane.remove(next);
+                    return new Task(next, submission);
+                }
+            }
+            wait();
+        }
+        throw new InterruptedException();
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                Task task = take();
+                CountDownLatch stopped = new CountDownLatch(1);
+                Report.Entry entry;
+                try {
+                    entry = task.job().evaluator.evaluate(task.submission(), stopped::countDown);
+                } catch (RuntimeException e) { // Don't lose the worker, nor leave the job unfinished
+                    Map<Test, List<Result>> results = new HashMap<>();
+                    results.put(null, new ArrayList<>(List.of(Result.exception(null, e))));
+                    entry = new Report.Entry(task.submission(), results, 0.0);
+                    stopped.countDown();
+                }
+                task.job().record(entry);
+                stopped.await(); // A timed-out evaluation keeps this worker busy until it stops
+            }
+        } catch (InterruptedException e) {
+            // Shut down
+        }
+    }
+}
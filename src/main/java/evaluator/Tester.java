@@ -8,7 +8,11 @@ import extensions.Levenshtein;
 import loading.ClassLoader;
 import loading.ClassLoadingException;
 import loading.CompilationException;
+import reflection.CallbackTimeoutException;
+import reflection.Callbacks;
+import reflection.QuotaExceededException;
 import reflection.Reflector;
+import reflection.ResourceUsage;
 
 import java.io.File;
 import java.io.IOException;
@@ -18,9 +22,9 @@ import java.lang.reflect.Method;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 /**
  * Abstract class used to test a student's submission. Automatically loads .java files, compiles them, and runs the
@@ -50,6 +54,31 @@ public class Tester extends Reflector {
 		boolean check();
 	}
 
+	/**
+	 * A property that should hold for every generated input. See also: {@link Generator}.
+	 */
+	@FunctionalInterface
+	public interface Property<T> {
+		/**
+		 * @param input A copy of a generated input, which may be handed to student code.
+		 * @return True if the property holds for the input. Throwing an exception means it doesn't.
+		 */
+		boolean holds(T input) throws Exception;
+	}
+
+	/**
+	 * One call of a batch, which invokes student code directly, e.g. <code>insert.invoke(tree, i)</code>.
+	 * See also: {@link #invokeSequence(int, Step)}.
+	 */
+	@FunctionalInterface
+	public interface Step {
+		/**
+		 * @param index The call's index in the batch.
+		 * @return The call's result.
+		 */
+		Object call(int index) throws Throwable;
+	}
+
 	public class ObjectInstantiation {
 
 		private final Constructor<?> constructor;
@@ -62,24 +91,27 @@ public class Tester extends Reflector {
 		}
 
 		public Object getOrThrow() throws ExecutionException, InterruptedException, TimeoutException {
-			return getInstance(constructor, initArgs);
+			return getInstance(usage(currentTest()), constructor, initArgs);
 		}
 
 		public Object getOrFail() throws ManualFailureException {
 			try {
-				return getInstance(constructor, initArgs);
+				return getInstance(usage(currentTest()), constructor, initArgs);
 			}
 			catch (TimeoutException e) {
-				log(new ObjectInstantiationError(currentTest, constructor.getDeclaringClass(), initArgs, e));
+				log(new ObjectInstantiationError(currentTest(), constructor.getDeclaringClass(), initArgs, e));
 				fail();
 				return null;
 			}
 			catch (InterruptedException ignored) {  }
+			catch (QuotaExceededException e) {
+				throw e; // Abort the submission
+			}
 			catch (Throwable e) {
 				Throwable error = e;
 				if (e instanceof ExecutionException) error = e.getCause();
 
-				log(new ObjectInstantiationError(currentTest, constructor.getDeclaringClass(), initArgs, error));
+				log(new ObjectInstantiationError(currentTest(), constructor.getDeclaringClass(), initArgs, error));
 				fail();
 				return null;
 			}
@@ -89,17 +121,19 @@ public class Tester extends Reflector {
 		public <T extends Throwable> void assertThrows(Class<T> exception) throws ManualFailureException {
 			Throwable thrown = null;
 			try {
-				getInstance(constructor, initArgs);
-            } catch (Throwable e) {
+				getInstance(usage(currentTest()), constructor, initArgs);
+            } catch (QuotaExceededException e) {
+				throw e; // Abort the submission
+			} catch (Throwable e) {
 				if (e instanceof ExecutionException) thrown = e.getCause();
 				else thrown = e;
 			}
 
 			if (thrown == null) {
-				log(new ConstructorMissingExceptionError<>(currentTest, this, exception, null));
+				log(new ConstructorMissingExceptionError<>(currentTest(), this, exception, null));
 				fail();
 			} else if (!exception.isAssignableFrom(thrown.getClass())) {
-				log(new ConstructorMissingExceptionError<>(currentTest, this, exception, thrown));
+				log(new ConstructorMissingExceptionError<>(currentTest(), this, exception, thrown));
 				fail();
 			}
 		}
@@ -118,40 +152,41 @@ public class Tester extends Reflector {
 
 		private final Object[] arguments;
 
+		private final Object[] snapshots; // Of the arguments before the call, for rendering it
+
 		private Object result = NONE;
 
 		private Throwable exception = null;
 
+		private final ResourceUsage usage = new ResourceUsage();
+
 		public MethodCall(Method method, Object caller, Object[] arguments) {
 			this.method = method;
 			this.caller = caller;
+			this.arguments = arguments;
 
-			this.arguments = new Object[arguments.length];
-			for (int i = 0; i < arguments.length; i++) {
-				Object argument = arguments[i];
-				if (argument != null && argument.getClass().isArray())
-					this.arguments[i] = Arrays.copyOf((Object[]) argument, ((Object[]) argument).length);
-				else if (argument != null && Iterable.class.isAssignableFrom(argument.getClass()))
-					this.arguments[i] = Extensions.copy((Iterable<?>) argument);
-				else
-					this.arguments[i] = argument;
-			}
+			// Only small arguments are copied, unless the oracle is enabled and needs them as they were
+			int limit = oracle == null ? SNAPSHOT_LIMIT : Integer.MAX_VALUE;
+			this.snapshots = new Object[arguments.length];
+			for (int i = 0; i < arguments.length; i++)
+				this.snapshots[i] = Extensions.snapshot(arguments[i], limit);
 
 			try {
-				Object res = getInvocationResult(method, caller, arguments);
-				if (res == null)
-					this.result = null;
-				else if (res.getClass().isArray())
-					this.result = Arrays.copyOf((Object[]) res, ((Object[]) res).length);
-				else if (Iterable.class.isAssignableFrom(res.getClass()))
-					this.result = Extensions.copy((Iterable<?>) res);
-				else
-					this.result = res;
+				this.result = getInvocationResult(usage, method, caller, arguments); // Only copied by failed assertions
 			} catch (ExecutionException ex) {
 				this.exception = ex.getCause();
+			} catch (QuotaExceededException ex) {
+				usage(currentTest()).add(usage);
+				throw ex; // Abort the submission
+			} catch (InterruptedException ex) {
+				this.exception = ex;
+				Thread.currentThread().interrupt(); // Evaluation was cancelled, let the tester know
 			} catch (Throwable ex) {
 				this.exception = ex;
 			}
+			usage(currentTest()).add(usage);
+			if (exception instanceof TimeoutException)
+				timeouts(currentTest()).incrementAndGet();
 		}
 
 		public boolean isSuccess() {
@@ -162,6 +197,42 @@ public class Tester extends Reflector {
 			return exception != null;
 		}
 
+		/**
+		 * The invocation's result, without asserting anything about it, e.g. to check a property.
+		 * @return The result, or null if the invocation threw an exception or timed out. See also: {@link #isSuccess()}.
+		 */
+		public Object getResult() {
+			return result == NONE ? null : result;
+		}
+
+		/**
+		 * Resources consumed by the student code during this invocation.
+		 * @return The bytes allocated and CPU time consumed by the invocation.
+		 */
+		public ResourceUsage getUsage() {
+			return usage;
+		}
+
+		public long getAllocatedBytes() {
+			return usage.getAllocatedBytes();
+		}
+
+		public long getCpuTime() {
+			return usage.getCpuTime();
+		}
+
+		/**
+		 * Asserts that the invocation allocated at most the given number of bytes.
+		 * @param bytes The allocation budget, in bytes.
+		 */
+		public void assertAllocatesAtMost(long bytes) throws ManualFailureException {
+			log(this);
+			Result res = new AllocationBudgetResult(currentTest(), toString(), bytes, usage.getAllocatedBytes(), false);
+			log(res);
+			if (!res.passed())
+				fail();
+		}
+
 		public Object getOrFail() throws ManualFailureException {
 			log(this);
 			if (result != NONE)
@@ -180,32 +251,32 @@ public class Tester extends Reflector {
 
 		public void assertTrue() throws ManualFailureException {
 			log(this);
-			if (Objects.equals(result, true))
-				log(Result.success(currentTest, null));
+			if (Boolean.TRUE.equals(result))
+				log(Result.success(currentTest(), null));
 			else
 				fail();
 		}
 
 		public void assertTrue(String message) throws ManualFailureException {
 			log(this);
-			if (Objects.equals(result, true))
-				log(Result.success(currentTest, null));
+			if (Boolean.TRUE.equals(result))
+				log(Result.success(currentTest(), null));
 			else
 				fail(message);
 		}
 
 		public void assertFalse() throws ManualFailureException {
 			log(this);
-			if (Objects.equals(result, false))
-				log(Result.success(currentTest, null));
+			if (Boolean.FALSE.equals(result))
+				log(Result.success(currentTest(), null));
 			else
 				fail();
 		}
 
 		public void assertFalse(String message) throws ManualFailureException {
 			log(this);
-			if (Objects.equals(result, false))
-				log(Result.success(currentTest, null));
+			if (Boolean.FALSE.equals(result))
+				log(Result.success(currentTest(), null));
 			else
 				fail(message);
 		}
@@ -213,13 +284,13 @@ public class Tester extends Reflector {
 		public <T extends Throwable> void assertThrows(Class<T> type) throws ManualFailureException {
 			log(this);
 			if (isSuccess()) {
-				log(new MethodMissingExceptionError<>(currentTest, this, type, result));
+				log(new MethodMissingExceptionError<>(currentTest(), this, type, Extensions.snapshot(result, Integer.MAX_VALUE)));
 				fail();
 			} else if (exception instanceof TimeoutException) {
-				log(new MethodTimeoutError(currentTest, this));
+				log(new MethodTimeoutError(currentTest(), this));
 				fail();
 			} else if (threwException()) {
-				Result res = new MethodInvocationException<>(currentTest, this, type, exception.getClass());
+				Result res = new MethodInvocationException<>(currentTest(), this, type, exception.getClass());
 				log(res);
 				if (!res.passed())
 					fail();
@@ -229,18 +300,18 @@ public class Tester extends Reflector {
 		public void assertDoesNotThrow() throws ManualFailureException {
 			log(this);
 			if (exception instanceof TimeoutException) {
-				log(new MethodTimeoutError(currentTest, this));
+				log(new MethodTimeoutError(currentTest(), this));
 				fail();
 			} else if (threwException()) {
-				log(new AssertDoesNotThrowFailedError(currentTest, this, exception));
+				log(new AssertDoesNotThrowFailedError(currentTest(), this, exception));
 				fail();
 			} else
-				log(Result.success(currentTest, "Method shouldn't have thrown any exception, and it didn't! Hooray!"));
+				log(Result.success(currentTest(), "Method shouldn't have thrown any exception, and it didn't! Hooray!"));
 		}
 
 		public boolean assertProducesSideEffect(SideEffectChecker checker) throws ManualFailureException {
 			log(this);
-			Result res = new MethodInvocationSideEffect(currentTest, this, checker, checker.check());
+			Result res = new MethodInvocationSideEffect(currentTest(), this, checker, checker.check());
 			log(res);
 			if (!res.passed())
 				fail();
@@ -250,15 +321,15 @@ public class Tester extends Reflector {
 		public Object assertEquals(Object expected) throws ManualFailureException {
 			log(this);
 			if (isSuccess()) {
-				Result res = new MethodInvocationResult(currentTest, this, expected, result, MethodInvocationResult.EqualsType.EXACT);
+				Result res = new MethodInvocationResult(currentTest(), this, expected, result, MethodInvocationResult.EqualsType.EXACT);
 				log(res);
 				if (!res.passed())
 					fail();
 			} else if (exception instanceof TimeoutException) {
-				log(new MethodTimeoutError(currentTest, this));
+				log(new MethodTimeoutError(currentTest(), this));
 				fail();
 			} else if (threwException()) {
-				log(new UnexpectedExceptionError(currentTest, this, expected, exception, MethodInvocationResult.EqualsType.EXACT));
+				log(new UnexpectedExceptionError(currentTest(), this, expected, exception, MethodInvocationResult.EqualsType.EXACT));
 				fail();
 			}
 			return expected;
@@ -266,34 +337,77 @@ public class Tester extends Reflector {
 
         @SuppressWarnings("unchecked")
         public <T, I extends Iterable<T>> I assertContentEquals(T[] expected) throws ManualFailureException {
-            log(this);
-            if (isSuccess()) {
-                Result res = new MethodInvocationResult(currentTest, this, expected, result, MethodInvocationResult.EqualsType.CONTENT);
-                log(res);
-                if (!res.passed())
-                    fail();
-            } else if (exception instanceof TimeoutException) {
-                log(new MethodTimeoutError(currentTest, this));
-                fail();
-            } else if (threwException()) {
-                log(new UnexpectedExceptionError(currentTest, this, expected, exception, MethodInvocationResult.EqualsType.CONTENT));
-                fail();
-            }
+            assertContent(expected);
             return (I) Arrays.asList(expected);
         }
 
+		/**
+		 * Asserts that the result has the same elements, in the same order, as an array of any type (including
+		 * primitive arrays) or an Iterable.
+		 * @return The expected content.
+		 */
+		public Object assertContentEquals(Object expected) throws ManualFailureException {
+			assertContent(expected);
+			return expected;
+		}
+
+		private void assertContent(Object expected) throws ManualFailureException {
+			log(this);
+			if (isSuccess()) {
+				Result res = new MethodInvocationResult(currentTest(), this, expected, result, MethodInvocationResult.EqualsType.CONTENT);
+				log(res);
+				if (!res.passed())
+					fail();
+			} else if (exception instanceof TimeoutException) {
+				log(new MethodTimeoutError(currentTest(), this));
+				fail();
+			} else if (threwException()) {
+				log(new UnexpectedExceptionError(currentTest(), this, expected, exception, MethodInvocationResult.EqualsType.CONTENT));
+				fail();
+			}
+		}
+
+		/**
+		 * Asserts that the result equals that of the same static method of the reference implementation, given the
+		 * same arguments. Array results are compared by content. If the reference throws an exception, the method
+		 * is expected to throw an exception of the same type.
+		 * @return The expected result.
+		 */
+		public Object assertEqualsReference() throws ManualFailureException {
+			if (oracle == null)
+				throw new IllegalStateException("No oracle to compute expected results with: enable it with FullEvaluator.withOracle.");
+			Object expected;
+			try {
+				expected = oracle.expected(currentTest(), method, snapshots);
+			} catch (Exception e) {
+				throw new IllegalStateException("Could not compute the expected result of " + method.getName() + ": " + e.getMessage(), e);
+			}
+
+			if (expected instanceof Oracle.Thrown thrown) {
+				try {
+					assertThrows(Class.forName(thrown.type()).asSubclass(Throwable.class));
+				} catch (ClassNotFoundException e) {
+					assertThrows(Throwable.class); // Thrown by a class of the reference implementation
+				}
+				return null;
+			}
+			if (expected != null && expected.getClass().isArray()) // Including primitive arrays
+				return assertContentEquals(expected);
+			return assertEquals(expected);
+		}
+
 		public Object assertEqualsAny(Object... expected) throws ManualFailureException {
 			log(this);
 			if (isSuccess()) {
-				Result res = new MethodInvocationResult(currentTest, this, expected, result, MethodInvocationResult.EqualsType.ANY);
+				Result res = new MethodInvocationResult(currentTest(), this, expected, result, MethodInvocationResult.EqualsType.ANY);
 				log(res);
 				if (!res.passed())
 					fail();
 			} else if (exception instanceof TimeoutException) {
-				log(new MethodTimeoutError(currentTest, this));
+				log(new MethodTimeoutError(currentTest(), this));
 				fail();
 			} else if (threwException()) {
-				log(new UnexpectedExceptionError(currentTest, this, expected, exception, MethodInvocationResult.EqualsType.ANY));
+				log(new UnexpectedExceptionError(currentTest(), this, expected, exception, MethodInvocationResult.EqualsType.ANY));
 				fail();
 			}
 			return expected[0];
@@ -302,15 +416,15 @@ public class Tester extends Reflector {
 		public <T> T[] assertIsPermutation(T... expected) throws ManualFailureException {
 			log(this);
 			if (isSuccess()) {
-				Result res = new MethodInvocationResult(currentTest, this, expected, result, MethodInvocationResult.EqualsType.PERMUTATION);
+				Result res = new MethodInvocationResult(currentTest(), this, expected, result, MethodInvocationResult.EqualsType.PERMUTATION);
 				log(res);
 				if (!res.passed())
 					fail();
 			} else if (exception instanceof TimeoutException) {
-				log(new MethodTimeoutError(currentTest, this));
+				log(new MethodTimeoutError(currentTest(), this));
 				fail();
 			} else if (threwException()) {
-				log(new UnexpectedExceptionError(currentTest, this, expected, exception, MethodInvocationResult.EqualsType.PERMUTATION));
+				log(new UnexpectedExceptionError(currentTest(), this, expected, exception, MethodInvocationResult.EqualsType.PERMUTATION));
 				fail();
 			}
 			return expected;
@@ -319,10 +433,10 @@ public class Tester extends Reflector {
 		@Override
 		public String toString() {
 			StringBuilder s = new StringBuilder(method.getName() + "(");
-			if (arguments.length > 0) {
-				s.append(Extensions.toStringOrDefault(arguments[0]).trim());
-				for (int i = 1; i < arguments.length; i++)
-					s.append(", ").append(Extensions.toStringOrDefault(arguments[i]).trim());
+			if (snapshots.length > 0) {
+				s.append(Extensions.toStringOrDefault(snapshots[0]).trim());
+				for (int i = 1; i < snapshots.length; i++)
+					s.append(", ").append(Extensions.toStringOrDefault(snapshots[i]).trim());
 			}
 			s.append(")");
 			if (caller != null)
@@ -331,9 +445,160 @@ public class Tester extends Reflector {
 		}
 	}
 
-	private final Map<Test, List<MethodCall>> invocations = new HashMap<>();
+	/**
+	 * Many calls to student code, run one after the other in a single invocation with a single timeout, rather than
+	 * handing each call to another thread. Stops at the first call that throws an exception.
+	 */
+	public class Batch {
+
+		private final String description;
+
+		private final IntFunction<String> calls;
+
+		private final Object[] results;
+
+		private final AtomicInteger completed = new AtomicInteger();
+
+		private final int completedCount; // When the batch ended: a timed-out batch may keep running, ignoring interrupts
+
+		private Throwable exception = null;
+
+		private final ResourceUsage usage = new ResourceUsage();
+
+		private Batch(String description, int count, IntFunction<String> calls, Step step) {
+			this.description = description;
+			this.calls = calls;
+			this.results = new Object[count];
+			ResourceUsage consumed = new ResourceUsage();
+			try {
+				getTaskResult(consumed, () -> {
+					for (int i = 0; i < results.length; i++) {
+						try {
+							results[i] = step.call(i);
+						} catch (InvocationTargetException e) {
+							throw new ExecutionException(e.getTargetException());
+						} catch (Throwable e) {
+							throw new ExecutionException(e);
+						}
+						completed.lazySet(i + 1); // Publishes results[i], for the count taken when the batch ends
+					}
+					return null;
+				});
+			} catch (ExecutionException ex) {
+				this.exception = ex.getCause() instanceof ExecutionException cause ? cause.getCause() : ex.getCause();
+			} catch (QuotaExceededException ex) {
+				usage.add(consumed);
+				usage(currentTest()).add(consumed);
+				throw ex; // Abort the submission
+			} catch (InterruptedException ex) {
+				this.exception = ex;
+				Thread.currentThread().interrupt(); // Evaluation was cancelled, let the tester know
+			} catch (Throwable ex) {
+				this.exception = ex;
+			}
+			this.completedCount = exception == null ? results.length : completed.get();
+			usage.add(consumed);
+			usage(currentTest()).add(consumed);
+		}
+
+		public boolean isSuccess() {
+			return exception == null;
+		}
+
+		/**
+		 * The index of the call that threw an exception or timed out.
+		 * @return The index, or -1 if every call completed.
+		 */
+		public int getFailedIndex() {
+			return exception == null ? -1 : completedCount;
+		}
+
+		public Throwable getException() {
+			return exception;
+		}
+
+		/**
+		 * The results of the calls that completed, in order. Calls to void methods have null results.
+		 */
+		public List<Object> getResults() {
+			return Arrays.asList(results).subList(0, completedCount);
+		}
+
+		public Object getResult(int index) {
+			return getResults().get(index);
+		}
+
+		public int size() {
+			return results.length;
+		}
+
+		/**
+		 * Resources consumed by the student code during the whole batch.
+		 */
+		public ResourceUsage getUsage() {
+			return usage;
+		}
+
+		/**
+		 * Asserts that every call completed without throwing an exception or timing out.
+		 */
+		public void assertDoesNotThrow() throws ManualFailureException {
+			Result res = isSuccess() ? new BatchResult(currentTest(), description, results.length) :
+					new BatchResult(currentTest(), description, results.length, getFailedIndex(), calls.apply(getFailedIndex()), describeFailure());
+			log(res);
+			if (!res.passed())
+				fail();
+		}
+
+		/**
+		 * Asserts that every call completed and returned the expected result, compared with
+		 * {@link Objects#deepEquals(Object, Object)}. Reports the first call that didn't.
+		 * @param expected The expected results, one per call.
+		 */
+		public void assertResults(List<?> expected) throws ManualFailureException {
+			if (expected.size() != results.length)
+				throw new IllegalArgumentException("Expected " + results.length + " results, but got " + expected.size());
+			if (!isSuccess()) {
+				assertDoesNotThrow();
+				return;
+			}
+			int mismatch = -1;
+			for (int i = 0; i < results.length && mismatch < 0; i++) {
+				Object exp = expected.get(i), act = results[i];
+				boolean equal = Callbacks.isInert(exp) && Callbacks.isInert(act) ? Objects.deepEquals(exp, act) :
+						Callbacks.call(() -> Objects.deepEquals(exp, act)); // Each result gets its own callback budget
+				if (!equal)
+					mismatch = i;
+			}
+			if (mismatch >= 0) {
+				String failure = String.format("returned %s, but %s was expected",
+						Extensions.toStringOrDefault(results[mismatch]).trim(), Extensions.toStringOrDefault(expected.get(mismatch)).trim());
+				log(new BatchResult(currentTest(), description, results.length, mismatch, calls.apply(mismatch), failure));
+				fail();
+			}
+			log(new BatchResult(currentTest(), description, results.length));
+		}
+
+		private String describeFailure() {
+			if (exception instanceof TimeoutException)
+				return "timed out. Have you checked for infinite loops or unbounded recursion?";
+			return "threw " + exception.getClass().getSimpleName() + (exception.getMessage() == null ? "" : ": " + exception.getMessage());
+		}
+
+		@Override
+		public String toString() {
+			return description;
+		}
+	}
+
+	// Synchronized rather than concurrent maps, since results logged outside any test are kept under a null key
+	private final Map<Test, List<MethodCall>> invocations = Collections.synchronizedMap(new HashMap<>());
 
-	private final Map<Test, List<Result>> results = new HashMap<>();
+	private final Map<Test, List<Result>> results = Collections.synchronizedMap(new HashMap<>());
+
+	private final Map<Test, ResourceUsage> usage = Collections.synchronizedMap(new HashMap<>());
+
+	private final Map<Test, AtomicInteger> timeouts = Collections.synchronizedMap(new HashMap<>()); // Timed-out calls
 
 	private final Map<String, String> fileNames = new HashMap<>();
 
@@ -341,7 +606,19 @@ public class Tester extends Reflector {
 
 	private final List<String> invalidClassNames = new ArrayList<>(); // If an error is raised, don't try loading again
 
-	private Test currentTest;
+	private static final ScopedValue<Test> CURRENT_TEST = ScopedValue.newInstance();
+
+	private static final int MAX_SHRINK_CHECKS = 1000;
+
+	private static final long MAX_SHRINK_MILLIS = 10_000L; // Across all checks, which may each take up to the timeout
+
+	private static final int SNAPSHOT_LIMIT = 100; // Larger arguments are summarised in messages, rather than copied
+
+	private int parallelism = 1;
+
+	private Oracle oracle;
+
+	private final Set<Test> reused = Collections.synchronizedSet(new HashSet<>()); // Evaluated by a previous run
 
 	private final Submission submission;
 
@@ -353,6 +630,71 @@ public class Tester extends Reflector {
 		this.submission = submission;
 	}
 
+	/**
+	 * The test being run by the current thread.
+	 * @return The running test, or null if called outside of any test (e.g. in a {@link BeforeAll} method).
+	 */
+	protected Test currentTest() {
+		return CURRENT_TEST.isBound() ? CURRENT_TEST.get() : null;
+	}
+
+	/**
+	 * Sets how many tests may run at the same time. Tests marked {@link Isolated} always run on their own, after all
+	 * other tests. Testers that run tests in parallel shouldn't keep per-test state in their own fields.
+	 * @param parallelism The maximum number of tests running at the same time. 1 (the default) runs them sequentially.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setOracle(Oracle oracle) {
+		this.oracle = oracle;
+	}
+
+	/**
+	 * Computes expected results from the reference implementation, once for every submission. See also:
+	 * {@link FullEvaluator#withOracle()} and {@link MethodCall#assertEqualsReference()}.
+	 * @return The oracle, or null if it wasn't enabled.
+	 */
+	public Oracle getOracle() {
+		return oracle;
+	}
+
+	/**
+	 * Computes a value once for every submission, e.g. an expected result, if the oracle is enabled. Otherwise, it is
+	 * computed every time.
+	 * @param key Identifies the value, e.g. by test and input.
+	 * @param compute Computes the value.
+	 * @return The value.
+	 */
+	protected Object expected(String key, Callable<?> compute) throws Exception {
+		if (oracle == null)
+			return compute.call();
+		return oracle.memo(key, compute);
+	}
+
+	/**
+	 * Reuses the results of tests evaluated in a previous run. Those tests are not run again, but still count towards
+	 * the grade.
+	 * @param previous The previous results, by test.
+	 * @param previousUsage The resources consumed by student code in each of those tests.
+	 */
+	public void reuse(Map<Test, List<Result>> previous, Map<Test, ResourceUsage> previousUsage) {
+		for (Map.Entry<Test, List<Result>> test : previous.entrySet()) {
+			if (test.getKey() == null)
+				continue; // Logged outside any test, which runs again anyway
+			reused.add(test.getKey());
+			results.put(test.getKey(), Collections.synchronizedList(new ArrayList<>(test.getValue())));
+			invocations.putIfAbsent(test.getKey(), Collections.synchronizedList(new ArrayList<>()));
+			if (previousUsage.containsKey(test.getKey()))
+				usage.put(test.getKey(), new ResourceUsage().add(previousUsage.get(test.getKey())));
+		}
+	}
+
 	public static Set<String> getAllRequiredFiles(Class<? extends Tester> type) {
 		Set<String> files = new HashSet<>();
 		for (Method test : getAnnotatedMethods(type, Test.class)) {
@@ -372,16 +714,43 @@ public class Tester extends Reflector {
 		return submission;
 	}
 
+	/**
+	 * Resources consumed by student code, per test.
+	 * @return A map pairing each test with the bytes allocated and CPU time consumed by its invocations.
+	 */
+	public Map<Test, ResourceUsage> getUsage() {
+		return usage;
+	}
+
+	/**
+	 * Resources consumed by student code across all tests.
+	 * @return The total bytes allocated and CPU time consumed by the submission.
+	 */
+	public ResourceUsage getTotalUsage() {
+		ResourceUsage total = new ResourceUsage();
+		synchronized (usage) {
+			for (ResourceUsage u : usage.values())
+				total.add(u);
+		}
+		return total;
+	}
+
+	private ResourceUsage usage(Test test) {
+		return usage.computeIfAbsent(test, t -> new ResourceUsage());
+	}
+
+	private AtomicInteger timeouts(Test test) {
+		return timeouts.computeIfAbsent(test, t -> new AtomicInteger());
+	}
+
 	protected void log(Result message) {
-		if (!results.containsKey(currentTest))
-			results.put(currentTest, new ArrayList<>());
-		results.get(currentTest).add(message);
+		List<Result> logged = results.computeIfAbsent(currentTest(), test -> Collections.synchronizedList(new ArrayList<>()));
+		logged.add(message);
 	}
 
 	private void log(MethodCall call) {
-		if (!invocations.containsKey(currentTest))
-			invocations.put(currentTest, new ArrayList<>());
-		invocations.get(currentTest).add(call);
+		List<MethodCall> logged = invocations.computeIfAbsent(currentTest(), test -> Collections.synchronizedList(new ArrayList<>()));
+		logged.add(call);
 	}
 
 	protected ObjectInstantiation instantiate(Class<?> type, Class<?>[] parameterTypes, Object... initArgs) throws ManualFailureException {
@@ -393,10 +762,10 @@ public class Tester extends Reflector {
 			constructor.setAccessible(true); // Access private constructors through Reflection magic
 			return new ObjectInstantiation(constructor, initArgs);
 		} catch (NoSuchMethodException e) {
-			log(new ConstructorNotImplementedError(currentTest, type, parameterTypes));
+			log(new ConstructorNotImplementedError(currentTest(), type, parameterTypes));
 			fail();
 		} catch (SecurityException e) {
-			log(Result.exception(currentTest, e));
+			log(Result.exception(currentTest(), e));
 			fail();
 		}
 		return null;
@@ -408,7 +777,7 @@ public class Tester extends Reflector {
 	 * @param javaFile The .java file.
 	 * @return The compiled class stored in the specified .java file.
 	 */
-	protected Class<?> getClass(String javaFile) {
+	protected synchronized Class<?> getClass(String javaFile) {
 		javaFile = fileNames.getOrDefault(javaFile, javaFile);
 
 		if (!invalidClassNames.contains(javaFile) && !compiledTypes.containsKey(javaFile)) {
@@ -460,7 +829,7 @@ public class Tester extends Reflector {
 			if (Arrays.equals(method.getParameterTypes(), parameterTypes) && nameIsSimilar) {
 				if (!method.getName().equals(name)) {
 					//System.err.println("[" + submission.getName() + "] Could not find method " + type.getSimpleName() + "." + name + ", but found close viable match: " + method.getName());
-					log(new IncorrectMethodNameError(currentTest, type, name, method.getName()));
+					log(new IncorrectMethodNameError(currentTest(), type, name, method.getName()));
 				}
 				return method;
 			}
@@ -479,6 +848,63 @@ public class Tester extends Reflector {
 		return new MethodCall(method, object, args);
 	}
 
+	/**
+	 * Invokes a method once for each list of arguments, all in a single invocation. Much cheaper than invoking the
+	 * method that many times, e.g. to insert 100 000 elements into a data structure. Arguments and results aren't
+	 * copied.
+	 * @param method The method to invoke.
+	 * @param object The object to invoke the method on.
+	 * @param arguments The arguments of each call.
+	 * @return The batch, with the result of each call or the index of the first call that failed.
+	 */
+	protected Batch invokeBatch(Method method, Object object, List<Object[]> arguments) {
+		method.setAccessible(true);
+		String description = arguments.size() + " call(s) to " + method.getName();
+		return new Batch(description, arguments.size(),
+				i -> method.getName() + "(" + Extensions.joinToString(arguments.get(i), a -> Extensions.toStringOrDefault(a).trim()) + ")",
+				i -> method.invoke(object, arguments.get(i)));
+	}
+
+	/**
+	 * Runs a number of calls to student code, all in a single invocation. For example, to insert 100 000 elements:
+	 * <pre>
+	 * invokeSequence(100_000, i -&gt; insert.invoke(tree, i)).assertDoesNotThrow();
+	 * </pre>
+	 * The step must invoke student code directly, not through {@link #invoke(Method, Object, Object...)}.
+	 * @param count The number of calls.
+	 * @param step Makes the call with the given index.
+	 * @return The batch, with the result of each call or the index of the first call that failed.
+	 */
+	protected Batch invokeSequence(int count, Step step) {
+		return new Batch(count + " call(s)", count, i -> "call #" + i, step);
+	}
+
+	/**
+	 * Tests a class against a reference implementation by replaying random sequences of operations on both.
+	 * See also: {@link Differential}.
+	 * @param api The interface whose methods are the operations, e.g. a queue's API declared by the tester.
+	 * @param reference The reference implementation, e.g. a JDK class or a class of the reference folder.
+	 * @param type The class to test. Doesn't need to implement the interface, only to declare its methods.
+	 * @return The differential test, to be configured and run with {@link Differential#assertBehavesLikeReference()}.
+	 * @throws NoSuchMethodException If either class lacks one of the interface's methods.
+	 */
+	protected Differential differential(Class<?> api, Class<?> reference, Class<?> type) throws NoSuchMethodException {
+		return new Differential(this, api, reference, type);
+	}
+
+	/**
+	 * Runs a task that calls student code any number of times in a single invocation, accounting the resources it
+	 * consumes to the current test. See also: {@link Reflector#getTaskResult(ResourceUsage, Callable)}.
+	 */
+	<V> V runTask(Callable<V> task) throws TimeoutException, InterruptedException, ExecutionException {
+		ResourceUsage consumed = new ResourceUsage();
+		try {
+			return getTaskResult(consumed, task);
+		} finally {
+			usage(currentTest()).add(consumed);
+		}
+	}
+
 	/**
 	 * Runs all tests in a submission testing class.
 	 */
@@ -510,15 +936,57 @@ public class Tester extends Reflector {
 		// Run all BeforeAll method before running test methods
 		invokeAll(getAnnotatedMethods(this.getClass(), BeforeAll.class), this);
 
+		List<Method> parallel = new ArrayList<>();
+		List<Method> isolated = new ArrayList<>();
 		for (Method test : getAnnotatedMethods(this.getClass(), Test.class)) {
+			if (parallelism > 1 && !test.isAnnotationPresent(Isolated.class))
+				parallel.add(test);
+			else isolated.add(test);
+		}
+
+		// Independent tests first, sharing the submission's compiled classes
+		if (!parallel.isEmpty()) {
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, parallel.size()));
+			try {
+				List<Future<?>> running = new ArrayList<>();
+				for (Method test : parallel)
+					running.add(executor.submit(() -> runTest(test)));
+				for (Future<?> future : running)
+					future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		for (Method test : isolated)
+			runTest(test);
+
+		// Interrupt any student code still running in the background
+		release();
+	}
+
+	/**
+	 * Runs a single test method, along with the {@link BeforeEach} methods, in the test's own context.
+	 * @param test The test method.
+	 */
+	private void runTest(Method test) {
+		// Submission was aborted for exceeding its resource quota or its evaluation was cancelled
+		if (getQuotaExceeded() != null || Thread.currentThread().isInterrupted())
+			return;
+
+		Test annotation = test.getAnnotation(Test.class);
+		if (reused.contains(annotation))
+			return;
+		invocations.putIfAbsent(annotation, Collections.synchronizedList(new ArrayList<>()));
+		results.putIfAbsent(annotation, Collections.synchronizedList(new ArrayList<>()));
+		ScopedValue.where(CURRENT_TEST, annotation).run(() -> guardCallbacks(usage(annotation), () -> {
 			// Invoke all BeforeEach methods before each test method
 			invokeAll(getAnnotatedMethods(this.getClass(), BeforeEach.class), this);
 
-			// Run the test method and collect results
-			currentTest = test.getAnnotation(Test.class);
-			invocations.putIfAbsent(currentTest, new ArrayList<>());
-			results.putIfAbsent(currentTest, new ArrayList<>());
-
 			// Compile required classes beforehand
 			Require required = test.getAnnotation(Require.class);
 			boolean isAnyClassInvalid = false;
@@ -527,7 +995,7 @@ public class Tester extends Reflector {
 					isAnyClassInvalid = getClass(req) == null;
 			}
 			if (isAnyClassInvalid)
-				continue;
+				return;
 
 			try {
 				test.invoke(this);
@@ -536,22 +1004,26 @@ public class Tester extends Reflector {
 
 				if (target instanceof ManualFailureException ex && ex.getMessage() != null) {
 					//System.err.println("[" + submission.getName() + "] " + "Fail: " + ex.getMessage());
-					log(Result.failure(currentTest, ex.getMessage()));
+					log(Result.failure(annotation, ex.getMessage()));
 				}
 				else if (target instanceof NoSuchMethodException ex)
-					log(new MethodNotImplementedError(currentTest, ex));
+					log(new MethodNotImplementedError(annotation, ex));
 				else if (target instanceof NoSuchFieldException ex)
-					log(new AttributeNotImplementedError(currentTest, ex));
+					log(new AttributeNotImplementedError(annotation, ex));
 				else if (target instanceof NoClassDefFoundError ex)
-					log(new ReferencedClassNotFoundError(currentTest, ex));
+					log(new ReferencedClassNotFoundError(annotation, ex));
+				else if (target instanceof QuotaExceededException ex)
+					log(new QuotaExceededError(annotation, ex));
+				else if (target instanceof CallbackTimeoutException ex)
+					log(new CallbackTimeoutError(annotation, ex));
 				else if (!(target instanceof ManualFailureException))  {
 					target.printStackTrace();
-					log(Result.exception(currentTest, target));
+					log(Result.exception(annotation, target));
 				}
 			} catch (Throwable e) {
 				e.printStackTrace();
 			}
-		}
+		}));
 	}
 
 	/**
@@ -571,7 +1043,7 @@ public class Tester extends Reflector {
 
 	protected void assertTrue(boolean condition, String failMessage) throws ManualFailureException {
 		if (condition)
-			log(Result.success(currentTest, null));
+			log(Result.success(currentTest(), null));
 		else
 			fail(failMessage);
 	}
@@ -588,6 +1060,122 @@ public class Tester extends Reflector {
 		assertFalse(condition, null);
 	}
 
+	/**
+	 * Asserts that a sequence of invocations allocated, on average, at most the given number of bytes per call.
+	 * Useful for checking that e.g. <code>push</code> is amortised allocation-free. The first invocation of a method
+	 * includes the one-off cost of linking the reflective call, so consider leaving it out of tight budgets.
+	 * @param bytesPerCall The amortised allocation budget, in bytes.
+	 * @param calls The invocations to check.
+	 */
+	protected void assertAmortisedAllocationAtMost(double bytesPerCall, List<MethodCall> calls) throws ManualFailureException {
+		if (calls.isEmpty())
+			return;
+		ResourceUsage total = new ResourceUsage();
+		for (MethodCall call : calls)
+			total.add(call.getUsage());
+		String description = calls.size() + " call(s) to " + calls.get(0).method.getName();
+		Result res = new AllocationBudgetResult(currentTest(), description, bytesPerCall, total.getAmortisedAllocatedBytes(), true);
+		log(res);
+		if (!res.passed())
+			fail();
+	}
+
+	/**
+	 * Checks a property for 100 generated inputs, of sizes up to 100. See also:
+	 * {@link #assertForAll(String, Generator, int, int, Property)}.
+	 */
+	protected <T> void assertForAll(String name, Generator<T> generator, Property<T> property) throws ManualFailureException {
+		assertForAll(name, generator, 100, 100, property);
+	}
+
+	/**
+	 * Checks that a property holds for every generated input, from the smallest to the largest. The first input
+	 * that falsifies it is shrunk to the simplest input that still does, which is logged as the counterexample.
+	 * Shrinking stops early once an input times out, since the others would likely take as long, or once a number
+	 * of checks or a total time is spent. The inputs are generated once per seed and shared by every submission (see {@link Fixtures#setSeed(long)}).
+	 * @param name The property's name. Properties of the same tester with the same name must use the same generator.
+	 * @param generator Generates the inputs.
+	 * @param cases The number of inputs.
+	 * @param maxSize The size of the largest input, e.g. an array's length.
+	 * @param property The property.
+	 */
+	protected <T> void assertForAll(String name, Generator<T> generator, int cases, int maxSize, Property<T> property) throws ManualFailureException {
+		List<T> inputs = Generator.cases(getClass(), name, generator, cases, maxSize);
+		for (int i = 0; i < inputs.size(); i++) {
+			T counterexample = inputs.get(i);
+			Check check = check(generator, property, counterexample);
+			if (check.failure() == null)
+				continue;
+			if (Thread.currentThread().isInterrupted())
+				fail(); // Evaluation was cancelled
+			String failure = check.failure();
+
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_SHRINK_MILLIS);
+			int shrinks = 0;
+			int checks = 0;
+			boolean shrunk = !check.timedOut();
+			while (shrunk && checks < MAX_SHRINK_CHECKS) {
+				shrunk = false;
+				for (T candidate : generator.shrink(counterexample)) {
+					if (++checks > MAX_SHRINK_CHECKS || System.nanoTime() - deadline > 0)
+						break;
+					Check candidateCheck = check(generator, property, candidate);
+					if (candidateCheck.timedOut())
+						break;
+					if (candidateCheck.failure() != null) {
+						counterexample = candidate;
+						failure = candidateCheck.failure();
+						shrinks++;
+						shrunk = true;
+						break;
+					}
+				}
+			}
+			log(new PropertyResult(currentTest(), name, i + 1, generator.describe(counterexample), failure, shrinks));
+			fail();
+		}
+		log(new PropertyResult(currentTest(), name, inputs.size()));
+	}
+
+	/**
+	 * The outcome of checking a property for one input.
+	 * @param failure Null if the property holds; Otherwise, how it failed.
+	 * @param timedOut Did the check fail because student code timed out?
+	 */
+	private record Check(String failure, boolean timedOut) { }
+
+	/**
+	 * Checks a property for (a copy of) an input.
+	 */
+	private <T> Check check(Generator<T> generator, Property<T> property, T input) {
+		AtomicInteger timeouts = timeouts(currentTest());
+		int before = timeouts.get();
+		try {
+			if (property.holds(generator.copy(input)))
+				return new Check(null, false);
+			return new Check("returned false", timeouts.get() > before);
+		} catch (QuotaExceededException e) {
+			throw e; // Abort the submission
+		} catch (ManualFailureException e) {
+			return new Check(e.getMessage() == null ? "failed" : e.getMessage(), timeouts.get() > before);
+		} catch (Exception e) {
+			boolean timedOut = e instanceof TimeoutException || e instanceof CallbackTimeoutException || timeouts.get() > before;
+			return new Check("threw " + e.getClass().getSimpleName(), timedOut);
+		}
+	}
+
+	/**
+	 * A copy of a shared random input, generated once for all submissions. See also: {@link Fixtures}.
+	 * @param name The input's name.
+	 * @param length The number of integers.
+	 * @param min The smallest possible integer (inclusive).
+	 * @param max The largest possible integer (exclusive).
+	 * @return A fresh array, which the submission's code may modify.
+	 */
+	protected int[] randomInts(String name, int length, int min, int max) {
+		return Fixtures.intArray(name, length, min, max);
+	}
+
 	/**
 	 * Are any of the objects null?
 	 * @param objects A list of objects.
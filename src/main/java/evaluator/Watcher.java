@@ -0,0 +1,280 @@
+package evaluator;
+
+import extensions.Console;
+import extensions.Files;
+import loading.ClassLoader;
+import report.JSONReportWriter;
+import report.XLSXReportWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps the report of a {@link FullEvaluator} up to date while submissions keep arriving. After an initial full run,
+ * the submissions root is watched for new, changed or deleted submission folders. Each changed submission is
+ * evaluated again once its files stop changing for a while (the debounce delay), and the report and its XLSX and
+ * JSON outputs are rewritten.
+ * <p>
+ * Submissions are evaluated from a temporary copy, so the watched folders are never modified by the evaluation.
+ * The plagiarism analysis is the one from the initial run; it isn't refreshed as submissions change.
+ *
+ * @author Afonso Caniço
+ */
+public class Watcher<T extends Tester> {
+
+    private static final long DEBOUNCE_SECONDS = 10L;
+
+    private final FullEvaluator<T> evaluator;
+
+    private final String output;
+
+    private long debounce = DEBOUNCE_SECONDS;
+
+    private TimeUnit debounceUnit = TimeUnit.SECONDS;
+
+    private int plagiarismClusterMinimumSize = 5;
+
+    private Consumer<Report.Entry> listener;
+
+    private Report report;
+
+    private WatchService watchService;
+
+    private final Map<WatchKey, Path> watched = new HashMap<>();
+
+    private final Map<File, ScheduledFuture<?>> debounced = new HashMap<>(); // By submission directory
+
+    private final Map<File, String> contentHashes = new ConcurrentHashMap<>(); // Of the last evaluated sources
+
+    private final Set<File> evaluating = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService pool;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    private boolean outdated = false; // Are the written outputs behind the report?
+
+    /**
+     * @param evaluator The evaluator to run initially and to evaluate changed submissions with.
+     * @param output Path of the XLSX and JSON outputs, without extension.
+     */
+    public Watcher(FullEvaluator<T> evaluator, String output) {
+        this.evaluator = evaluator;
+        this.output = output;
+    }
+
+    /**
+     * Sets how long a submission's files must stay unchanged before it is evaluated again. Students often upload
+     * several files one at a time, and there's no point in evaluating a half-uploaded submission.
+     * @param delay The debounce delay.
+     * @param unit The delay's time unit.
+     */
+    public Watcher<T> withDebounce(long delay, TimeUnit unit) {
+        this.debounce = delay;
+        this.debounceUnit = unit;
+        return this;
+    }
+
+    /**
+     * Sets the minimum size of a group of identical submissions to be flagged in the XLSX output. See also:
+     * {@link XLSXReportWriter#write(Report, String, int)}.
+     */
+    public Watcher<T> withPlagiarismClusterMinimumSize(int size) {
+        this.plagiarismClusterMinimumSize = size;
+        return this;
+    }
+
+    /**
+     * Sets a listener that is notified of each submission's report entry whenever it is (re-)evaluated.
+     * Entries are delivered on the evaluating thread.
+     */
+    public Watcher<T> withListener(Consumer<Report.Entry> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * The report being kept up to date. Entries are replaced as their submissions are evaluated again.
+     * @return The report, or null if the initial run hasn't finished yet.
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    /**
+     * Evaluates every submission, then keeps watching for changes until the calling thread is interrupted.
+     * @param threads The number of submissions evaluated at the same time.
+     */
+    public void run(int threads) throws IOException, InterruptedException {
+        File root = new File(evaluator.getRoot());
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            // Watch before the initial run, so submissions arriving in the meantime aren't missed
+            register(root.toPath());
+
+            // The evaluator restores the sources it cleans, so hash them beforehand to tell real changes apart
+            for (File directory : submissionDirectories(root))
+                contentHashes.put(directory.getAbsoluteFile(), Manifest.getContentHash(new Submission(directory, evaluator.getExpectedFiles())));
+
+            report = evaluator.run(threads);
+            write();
+
+            scheduler = Executors.newSingleThreadScheduledExecutor();
+            pool = Executors.newFixedThreadPool(threads);
+            System.out.println("Watching " + root.getPath() + " for new or changed submissions...");
+            watch(root.getAbsoluteFile().toPath());
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        } finally {
+            watchService.close();
+            if (scheduler != null)
+                scheduler.shutdownNow();
+            if (pool != null)
+                pool.shutdownNow();
+            writer.shutdown();
+        }
+    }
+
+    private void watch(Path root) throws IOException, InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key = watchService.take();
+            Path directory = watched.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) { // Events were lost, so check every submission
+                    for (File submission : submissionDirectories(root.toFile()))
+                        schedule(submission);
+                    continue;
+                }
+                if (directory == null)
+                    continue;
+                Path path = directory.resolve((Path) event.context()).toAbsolutePath();
+                if (event.kind() == ENTRY_CREATE && java.nio.file.Files.isDirectory(path))
+                    register(path);
+
+                // Changes anywhere inside a submission's folder count as changes to that submission
+                Path relative = root.relativize(path);
+                if (relative.getNameCount() > 0 && !relative.toString().isEmpty())
+                    schedule(root.resolve(relative.getName(0)).toFile());
+            }
+            if (!key.reset())
+                watched.remove(key);
+        }
+    }
+
+    /**
+     * Watches a directory and all directories inside it.
+     */
+    private void register(Path directory) throws IOException {
+        Path absolute = directory.toAbsolutePath();
+        watched.put(absolute.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), absolute);
+        File[] children = absolute.toFile().listFiles(File::isDirectory);
+        if (children != null) {
+            for (File child : children)
+                register(child.toPath());
+        }
+    }
+
+    /**
+     * (Re)starts the debounce delay of a submission. It is evaluated once the delay elapses without further changes.
+     */
+    private synchronized void schedule(File directory) {
+        File key = directory.getAbsoluteFile();
+        ScheduledFuture<?> previous = debounced.get(key);
+        if (previous != null)
+            previous.cancel(false);
+        debounced.put(key, scheduler.schedule(() -> {
+            synchronized (this) {
+                debounced.remove(key);
+            }
+            pool.submit(() -> reevaluate(key));
+        }, debounce, debounceUnit));
+    }
+
+    private void reevaluate(File directory) {
+        // Don't evaluate the same submission twice at once; check again once the current evaluation is done
+        if (!evaluating.add(directory)) {
+            schedule(directory);
+            return;
+        }
+        try {
+            if (!directory.isDirectory()) {
+                if (contentHashes.remove(directory) != null) {
+                    report.remove(directory);
+                    System.out.println("Removed deleted submission: " + directory.getName());
+                    write();
+                }
+                return;
+            }
+
+            Submission submission = new Submission(directory, evaluator.getExpectedFiles());
+            String contentHash = Manifest.getContentHash(submission);
+            if (contentHash.equals(contentHashes.get(directory)))
+                return; // Only class files, backups, or other files the evaluator doesn't read changed
+
+            Report.Entry entry = evaluateCopy(submission);
+            contentHashes.put(directory, contentHash);
+            report.replace(entry);
+            System.out.println("Evaluated " + submission.getName() + ": " + entry.getGrade());
+            if (listener != null)
+                listener.accept(entry);
+            write();
+        } catch (IOException e) {
+            Console.warning("Could not evaluate " + directory.getName() + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            evaluating.remove(directory);
+        }
+    }
+
+    /**
+     * Evaluates a copy of a submission, since the evaluation cleans the code files it compiles.
+     * @return The report entry, referring to the original submission.
+     */
+    private Report.Entry evaluateCopy(Submission submission) throws IOException, InterruptedException {
+        File temp = java.nio.file.Files.createTempDirectory("aedeval-").toFile();
+        try {
+            File copy = new File(temp, submission.getDirectory().getName());
+            Files.copy(submission.getDirectory(), copy);
+            Report.Entry entry = evaluator.evaluate(new Submission(copy, submission.getName(), submission.getID(), submission.getExpectedFiles()));
+            ClassLoader.flush(copy);
+            return new Report.Entry(submission, entry.getResults(), entry.getGrade(), entry.getUsage(), entry.getElapsedMillis());
+        } finally {
+            if (!Files.delete(temp))
+                temp.deleteOnExit();
+        }
+    }
+
+    /**
+     * Rewrites the outputs. Writes requested while another one is in progress are coalesced into a single one.
+     */
+    private synchronized void write() {
+        if (outdated)
+            return;
+        outdated = true;
+        writer.submit(() -> {
+            synchronized (this) {
+                outdated = false;
+            }
+            try {
+                XLSXReportWriter.write(report, output, plagiarismClusterMinimumSize);
+                JSONReportWriter.write(report, output);
+            } catch (IOException | RuntimeException e) {
+                Console.warning("Could not write report to " + output + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private static List<File> submissionDirectories(File root) {
+        File[] directories = root.listFiles(File::isDirectory);
+        return directories == null ? List.of() : Arrays.asList(directories);
+    }
+}
@@ -0,0 +1,16 @@
+package evaluator.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation that marks test methods which must not run at the same time as any other test, e.g. because they
+ * mutate state shared by the student's classes (such as static fields). Only relevant when a tester runs its tests
+ * in parallel; isolated tests run one at a time, after all other tests.
+ *
+ * @author Afonso Caniço
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface Isolated {
+}
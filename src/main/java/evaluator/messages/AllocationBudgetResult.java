@@ -0,0 +1,58 @@
+package evaluator.messages;
+
+import evaluator.annotations.Test;
+
+public class AllocationBudgetResult extends Result {
+
+    private final String invocation;
+
+    private final double budget;
+
+    private final double allocated;
+
+    private final boolean amortised;
+
+    /**
+     * @param test The test during which the invocation(s) happened.
+     * @param invocation Description of the invocation(s) being checked.
+     * @param budget Maximum number of bytes allowed (per invocation, if amortised).
+     * @param allocated Number of bytes actually allocated (per invocation, if amortised).
+     * @param amortised Is the budget an average over several invocations?
+     */
+    public AllocationBudgetResult(Test test, String invocation, double budget, double allocated, boolean amortised) {
+        super(test);
+        this.invocation = invocation;
+        this.budget = budget;
+        this.allocated = allocated;
+        this.amortised = amortised;
+    }
+
+    @Override
+    public String errorCode() {
+        return "Allocation Budget Exceeded";
+    }
+
+    public double getBudget() {
+        return budget;
+    }
+
+    public double getAllocated() {
+        return allocated;
+    }
+
+    @Override
+    public boolean passed() {
+        return allocated <= budget;
+    }
+
+    @Override
+    public String getMessage() {
+        String unit = amortised ? " bytes per call (amortised)" : " bytes";
+        if (passed())
+            return String.format("%s allocated %.0f%s, within the budget of %.0f%s", invocation, allocated, unit, budget, unit);
+        return String.format(
+                "%s allocated %.0f%s, but at most %.0f%s were allowed. Are you copying data structures unnecessarily?",
+                invocation, allocated, unit, budget, unit
+        );
+    }
+}
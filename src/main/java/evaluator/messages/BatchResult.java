@@ -0,0 +1,65 @@
+package evaluator.messages;
+
+import evaluator.annotations.Test;
+
+public class BatchResult extends Result {
+
+    private final String batch;
+
+    private final int size;
+
+    private final int failedIndex;
+
+    private final String call;
+
+    private final String failure;
+
+    /**
+     * A batch whose calls all completed as expected.
+     * @param test The test during which the batch ran.
+     * @param batch Description of the batch, e.g. "1000 call(s) to insert".
+     * @param size The number of calls.
+     */
+    public BatchResult(Test test, String batch, int size) {
+        this(test, batch, size, -1, null, null);
+    }
+
+    /**
+     * A batch with a call that didn't complete as expected.
+     * @param test The test during which the batch ran.
+     * @param batch Description of the batch, e.g. "1000 call(s) to insert".
+     * @param size The number of calls.
+     * @param failedIndex The index of the first call that failed.
+     * @param call Description of that call.
+     * @param failure How it failed, e.g. "threw NullPointerException".
+     */
+    public BatchResult(Test test, String batch, int size, int failedIndex, String call, String failure) {
+        super(test);
+        this.batch = batch;
+        this.size = size;
+        this.failedIndex = failedIndex;
+        this.call = call;
+        this.failure = failure;
+    }
+
+    @Override
+    public String errorCode() {
+        return "Batch Call Failed";
+    }
+
+    public int getFailedIndex() {
+        return failedIndex;
+    }
+
+    @Override
+    public boolean passed() {
+        return failedIndex < 0;
+    }
+
+    @Override
+    public String getMessage() {
+        if (passed())
+            return batch + " completed as expected";
+        return String.format("Call %d of %d (%s) %s", failedIndex + 1, size, call, failure);
+    }
+}
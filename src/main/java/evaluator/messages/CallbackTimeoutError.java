@@ -0,0 +1,33 @@
+package evaluator.messages;
+
+import evaluator.annotations.Test;
+import reflection.CallbackTimeoutException;
+
+public class CallbackTimeoutError extends Result {
+
+    private final CallbackTimeoutException exception;
+
+    public CallbackTimeoutError(Test test, CallbackTimeoutException exception) {
+        super(test);
+        this.exception = exception;
+    }
+
+    @Override
+    public String errorCode() {
+        return "Callback Timeout";
+    }
+
+    public CallbackTimeoutException getException() {
+        return exception;
+    }
+
+    @Override
+    public boolean passed() {
+        return false;
+    }
+
+    @Override
+    public String getMessage() {
+        return exception.getMessage();
+    }
+}
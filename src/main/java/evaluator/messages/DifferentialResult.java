@@ -0,0 +1,81 @@
+package evaluator.messages;
+
+import evaluator.annotations.Test;
+
+import java.util.List;
+
+public class DifferentialResult extends Result {
+
+    private final String api;
+
+    private final int sequences;
+
+    private final int operations;
+
+    private final List<String> reproduction;
+
+    private final String expected;
+
+    private final String actual;
+
+    private final int originalLength;
+
+    /**
+     * A class that behaved like the reference in every sequence of operations.
+     * @param test The test during which the sequences were replayed.
+     * @param api The name of the interface the operations were drawn from.
+     * @param sequences The number of replayed sequences.
+     * @param operations The total number of replayed operations.
+     */
+    public DifferentialResult(Test test, String api, int sequences, int operations) {
+        this(test, api, sequences, operations, null, null, null, 0);
+    }
+
+    /**
+     * A class that behaved differently from the reference.
+     * @param test The test during which the sequences were replayed.
+     * @param api The name of the interface the operations were drawn from.
+     * @param sequences The number of replayed sequences, up to and including the diverging one.
+     * @param operations The total number of replayed operations.
+     * @param reproduction The (shrunk) operations leading to the divergence. The last one diverged.
+     * @param expected The outcome of the last operation on the reference.
+     * @param actual The outcome of the last operation on the tested class.
+     * @param originalLength The number of operations up to the divergence, before shrinking.
+     */
+    public DifferentialResult(Test test, String api, int sequences, int operations, List<String> reproduction,
+                              String expected, String actual, int originalLength) {
+        super(test);
+        this.api = api;
+        this.sequences = sequences;
+        this.operations = operations;
+        this.reproduction = reproduction;
+        this.expected = expected;
+        this.actual = actual;
+        this.originalLength = originalLength;
+    }
+
+    @Override
+    public String errorCode() {
+        return "Diverging Behaviour";
+    }
+
+    public List<String> getReproduction() {
+        return reproduction;
+    }
+
+    @Override
+    public boolean passed() {
+        return reproduction == null;
+    }
+
+    @Override
+    public String getMessage() {
+        if (passed())
+            return String.format("Behaves like the reference in %d sequence(s) of %s operations (%d in total)", sequences, api, operations);
+        String shrunk = originalLength > reproduction.size() ? " (shrunk from " + originalLength + ")" : "";
+        return String.format(
+                "Behaves differently from the reference after %d %s operation(s)%s: %s. The last operation %s, but it should have %s.",
+                reproduction.size(), api, shrunk, String.join("; ", reproduction), actual, expected
+        );
+    }
+}
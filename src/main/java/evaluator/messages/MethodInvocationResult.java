@@ -2,7 +2,11 @@ package evaluator.messages;
 
 import evaluator.Tester;
 import evaluator.annotations.Test;
+import extensions.Contents;
 import extensions.Extensions;
+import extensions.Traversal;
+import reflection.CallbackTimeoutException;
+import reflection.Callbacks;
 
 import java.util.*;
 
@@ -19,6 +23,9 @@ public class MethodInvocationResult extends Result {
     private final Object expected;
     private final Object actual;
     private final EqualsType equalsType;
+    private final boolean passed;
+    private Contents.Difference difference; // For permutations, an element occurring the wrong number of times
+    private RuntimeException incomparable; // If the result is too large or slow to compare, e.g. a looping equals
 
     public MethodInvocationResult(Test test, Tester.MethodCall call, Object expected, Object actual, EqualsType equalsType) {
         super(test);
@@ -30,24 +37,39 @@ public class MethodInvocationResult extends Result {
 
         this.call = call;
         this.expected = expected;
-        this.actual = actual;
         this.equalsType = equalsType;
+        boolean passed;
+        try {
+            if (Callbacks.isInert(expected) && Callbacks.isInert(actual))
+                passed = compare(actual);
+            else passed = Callbacks.call(() -> compare(actual)); // May call the result's equals, hashCode or iterator
+        } catch (Traversal.BudgetExceededException | CallbackTimeoutException e) {
+            passed = false;
+            incomparable = e;
+        }
+        this.passed = passed;
+        this.actual = passed ? actual : Extensions.snapshot(actual, Integer.MAX_VALUE); // Rendered later, as it is now
     }
 
     @Override
     public String errorCode() {
+        if (incomparable instanceof CallbackTimeoutException)
+            return "Callback Timeout"; // As for CallbackTimeoutError, so it's known to be transient
         return "Wrong Method Result";
     }
 
     public boolean passed() {
+        return passed;
+    }
+
+    private boolean compare(Object actual) {
         switch (equalsType) {
             case EXACT -> {
                 return Objects.equals(expected, actual);
             }
 
             case ANY -> {
-                Object[] exp = Extensions.toArray(expected);
-                return Arrays.asList(exp).contains(actual);
+                return Contents.contains(expected, actual);
             }
 
             case PERMUTATION -> {
@@ -56,9 +78,8 @@ public class MethodInvocationResult extends Result {
                 if (!actual.getClass().isArray() && !Iterable.class.isAssignableFrom(actual.getClass()))
                     return false;
 
-                List<Object> exp = Arrays.asList(Extensions.toArray(expected));
-                List<Object> act = Arrays.asList(Extensions.toArray(actual));
-                return exp.size() == act.size() && new HashSet<>(exp).equals(new HashSet<>(act));
+                difference = Contents.permutationDifference(expected, actual);
+                return difference == null;
             }
 
             case CONTENT -> {
@@ -67,7 +88,7 @@ public class MethodInvocationResult extends Result {
                 if (!actual.getClass().isArray() && !Iterable.class.isAssignableFrom(actual.getClass()))
                     return false;
 
-                return Arrays.equals(Extensions.toArray(expected), Extensions.toArray(actual));
+                return Contents.equal(expected, actual);
             }
         }
         return false;
@@ -96,6 +117,12 @@ public class MethodInvocationResult extends Result {
 
         if (passed())
             return expectedMessage;
+        if (incomparable != null)
+            return call + " returned wrong result: " + expectedMessage + " but the result couldn't be compared: " + incomparable.getMessage();
+        if (difference != null) // Rather than rendering both collections, which may be huge
+            return call + " returned wrong result: Expected a permutation, but element <"
+                    + Extensions.toStringOrDefault(difference.element()) + "> occurs " + difference.actual()
+                    + " time(s) instead of " + difference.expected();
         return call + " returned wrong result: " + expectedMessage + " but was <" + Extensions.toStringOrDefault(actual) + ">";
     }
 }
@@ -0,0 +1,66 @@
+package evaluator.messages;
+
+import evaluator.annotations.Test;
+
+public class PropertyResult extends Result {
+
+    private final String property;
+
+    private final int cases;
+
+    private final String counterexample;
+
+    private final String failure;
+
+    private final int shrinks;
+
+    /**
+     * A property that held for every generated input.
+     * @param test The test during which the property was checked.
+     * @param property The property's name.
+     * @param cases The number of inputs it was checked for.
+     */
+    public PropertyResult(Test test, String property, int cases) {
+        this(test, property, cases, null, null, 0);
+    }
+
+    /**
+     * A property that was falsified.
+     * @param test The test during which the property was checked.
+     * @param property The property's name.
+     * @param cases The number of inputs it was checked for, up to and including the first counterexample.
+     * @param counterexample The (shrunk) input that falsified the property.
+     * @param failure How the property failed for that input, e.g. "returned false".
+     * @param shrinks The number of times the first counterexample was replaced by a simpler one.
+     */
+    public PropertyResult(Test test, String property, int cases, String counterexample, String failure, int shrinks) {
+        super(test);
+        this.property = property;
+        this.cases = cases;
+        this.counterexample = counterexample;
+        this.failure = failure;
+        this.shrinks = shrinks;
+    }
+
+    @Override
+    public String errorCode() {
+        return "Property Falsified";
+    }
+
+    public String getCounterexample() {
+        return counterexample;
+    }
+
+    @Override
+    public boolean passed() {
+        return counterexample == null;
+    }
+
+    @Override
+    public String getMessage() {
+        if (passed())
+            return String.format("Property '%s' holds for %d generated input(s)", property, cases);
+        return String.format("Property '%s' doesn't hold for %s (%s). Found after %d input(s), simplified %d time(s).",
+                property, counterexample, failure, cases, shrinks);
+    }
+}
@@ -0,0 +1,33 @@
+package evaluator.messages;
+
+import evaluator.annotations.Test;
+import reflection.QuotaExceededException;
+
+public class QuotaExceededError extends Result {
+
+    private final QuotaExceededException exception;
+
+    public QuotaExceededError(Test test, QuotaExceededException exception) {
+        super(test);
+        this.exception = exception;
+    }
+
+    @Override
+    public String errorCode() {
+        return "Resource Quota Exceeded";
+    }
+
+    public QuotaExceededException getException() {
+        return exception;
+    }
+
+    @Override
+    public boolean passed() {
+        return false;
+    }
+
+    @Override
+    public String getMessage() {
+        return exception.getMessage() + ". Evaluation was aborted. Are you allocating huge arrays or creating threads in a loop?";
+    }
+}
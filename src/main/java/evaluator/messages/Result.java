@@ -3,11 +3,17 @@ package evaluator.messages;
 import evaluator.annotations.Test;
 
 import java.util.Objects;
+import java.util.Set;
 
 public abstract class Result {
 
     private final static String FAILURE_ERROR_CODE = "Assertion Failed";
     private final static String SUCCESS_ERROR_CODE = "Success";
+    private final static String EVALUATION_ERROR_CODE = "Evaluation Error";
+
+    // Timeouts and quotas depend on the machine's load; evaluation errors aren't the submission's doing
+    private final static Set<String> TRANSIENT_ERROR_CODES = Set.of(EVALUATION_ERROR_CODE, "Submission Timeout",
+            "Method Timeout", "Callback Timeout", "Resource Quota Exceeded");
 
     private final Test test;
 
@@ -60,6 +66,22 @@ public abstract class Result {
         return Objects.equals(errorCode(), FAILURE_ERROR_CODE);
     }
 
+    /**
+     * Might the result be different if the same code were evaluated again? That's the case for timeouts, exceeded
+     * quotas and errors of the evaluator itself, so such results shouldn't be reused in later runs.
+     */
+    public boolean isTransient() {
+        return isTransient(errorCode());
+    }
+
+    /**
+     * @param errorCode The error code of a result.
+     * @return True if results with this error code are transient. See also: {@link #isTransient()}.
+     */
+    public static boolean isTransient(String errorCode) {
+        return TRANSIENT_ERROR_CODES.contains(errorCode);
+    }
+
     public static Result success(Test test, String message) {
         return new Result(test) {
 
@@ -80,6 +102,58 @@ public abstract class Result {
         };
     }
 
+    /**
+     * Recreates a result that was previously recorded, e.g. in an evaluation journal.
+     * @param test The test the result belongs to.
+     * @param errorCode The original result's error code.
+     * @param passed Did the original result pass?
+     * @param message The original result's message.
+     * @return A result with the same error code, outcome, and message as the original.
+     */
+    public static Result restored(Test test, String errorCode, boolean passed, String message) {
+        return new Result(test) {
+            @Override
+            public String errorCode() {
+                return errorCode;
+            }
+
+            @Override
+            public boolean passed() {
+                return passed;
+            }
+
+            @Override
+            public String getMessage() {
+                return message;
+            }
+        };
+    }
+
+    /**
+     * A result for when the evaluator itself couldn't evaluate a submission, e.g. because its tester couldn't be run
+     * or no worker was available. Unlike other failures, it is transient (see {@link #isTransient()}).
+     * @param test The test the result belongs to, or null if it concerns the whole submission.
+     * @param message The error message.
+     */
+    public static Result evaluationError(Test test, String message) {
+        return new Result(test) {
+            @Override
+            public String errorCode() {
+                return EVALUATION_ERROR_CODE;
+            }
+
+            @Override
+            public boolean passed() {
+                return false;
+            }
+
+            @Override
+            public String getMessage() {
+                return message;
+            }
+        };
+    }
+
     public static Result failure(Test test, String message) {
         return new Result(test) {
             @Override
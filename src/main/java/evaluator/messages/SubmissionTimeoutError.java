@@ -0,0 +1,31 @@
+package evaluator.messages;
+
+import java.util.concurrent.TimeUnit;
+
+public class SubmissionTimeoutError extends Result {
+
+    private final long timeout;
+
+    private final TimeUnit unit;
+
+    public SubmissionTimeoutError(long timeout, TimeUnit unit) {
+        super(null);
+        this.timeout = timeout;
+        this.unit = unit;
+    }
+
+    @Override
+    public String errorCode() {
+        return "Submission Timeout";
+    }
+
+    @Override
+    public boolean passed() {
+        return false;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Evaluation of the submission did not finish within " + timeout + " " + unit.toString().toLowerCase() + " and was aborted. Have you checked for infinite loops or unbounded recursion?";
+    }
+}
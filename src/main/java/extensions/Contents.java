@@ -0,0 +1,372 @@
+package extensions;
+
+import reflection.Callbacks;
+
+import java.util.*;
+
+/**
+ * Compares the contents of arrays and collections, e.g. expected and actual method results. Arrays of
+ * <code>int</code>, <code>long</code>, <code>double</code> and <code>char</code>, their boxed equivalents and JDK
+ * containers (see {@link Callbacks#isContainer(Object)}) of those are compared as primitive arrays, with the JDK's
+ * vectorised {@link Arrays#equals} and {@link Arrays#sort}, without boxing any elements. Anything else is compared
+ * element by element with {@link Objects#equals(Object, Object)}.
+ *
+ * @author Afonso Caniço
+ */
+public class Contents {
+
+    private static final int RADIX_THRESHOLD = 1 << 12; // Smaller arrays are sorted faster by comparison
+
+    private static final int COUNTING_RANGE = 1 << 16; // Numbers in a smaller range (or twice the length) are counted
+
+    /**
+     * Do both values have the same elements, in the same order?
+     * @param expected An array or Iterable.
+     * @param actual An array or Iterable.
+     * @throws Traversal.BudgetExceededException If an Iterable has too many elements or takes too long.
+     */
+    public static boolean equal(Object expected, Object actual) {
+        Object exp = primitive(expected);
+        Object act = primitive(actual);
+        if (exp != null && act != null && exp.getClass() == act.getClass()) {
+            return switch (exp) {
+                case int[] e -> Arrays.equals(e, (int[]) act);
+                case long[] e -> Arrays.equals(e, (long[]) act);
+                case double[] e -> Arrays.equals(e, (double[]) act);
+                default -> Arrays.equals((char[]) exp, (char[]) act);
+            };
+        }
+        if (expected == null || actual == null)
+            return expected == actual;
+        return Traversal.mismatch(expected, actual) < 0; // Stops at the first mismatch, without copying either
+    }
+
+    /**
+     * An element that occurs a different number of times in two collections.
+     * @param element The element.
+     * @param expected The number of times it occurs in the expected collection.
+     * @param actual The number of times it occurs in the actual collection.
+     */
+    public record Difference(Object element, int expected, int actual) { }
+
+    /**
+     * Is the actual value a rearrangement of the expected one, i.e. do both have the same elements, each the same
+     * number of times? See also: {@link #permutationDifference(Object, Object)}.
+     * @param expected An array or Iterable.
+     * @param actual An array or Iterable.
+     */
+    public static boolean permutation(Object expected, Object actual) {
+        return permutationDifference(expected, actual) == null;
+    }
+
+    /**
+     * Finds an element that occurs a different number of times in the two values, stopping as soon as one is found.
+     * Numbers in a small range are counted, in linear time; other numbers are sorted (see {@link #sorted(int[])})
+     * and compared up to the first mismatch; anything else is counted in a hash table.
+     * @param expected An array or Iterable.
+     * @param actual An array or Iterable.
+     * @return The difference, or null if the actual value is a permutation of the expected one.
+     * @throws Traversal.BudgetExceededException If an Iterable has too many elements or takes too long.
+     */
+    public static Difference permutationDifference(Object expected, Object actual) {
+        Object exp = primitive(expected);
+        Object act = primitive(actual);
+        if (exp != null && act != null && exp.getClass() == act.getClass()) {
+            return switch (exp) {
+                case int[] e -> difference(e, (int[]) act);
+                case long[] e -> difference(e, (long[]) act);
+                case double[] e -> {
+                    Difference bits = difference(bits(e), bits((double[]) act)); // Same as Double.equals
+                    yield bits == null ? null : new Difference(Double.longBitsToDouble((Long) bits.element()), bits.expected(), bits.actual());
+                }
+                default -> {
+                    Difference codes = difference(ints((char[]) exp), ints((char[]) act));
+                    yield codes == null ? null : new Difference((char) (int) (Integer) codes.element(), codes.expected(), codes.actual());
+                }
+            };
+        }
+
+        Object[] e = boxed(expected);
+        Object[] a = boxed(actual);
+        Map<Object, Integer> counts = new LinkedHashMap<>(); // In the expected order, to report the first difference
+        for (Object element : e)
+            counts.merge(element, 1, Integer::sum);
+        for (Object element : a) {
+            Integer count = counts.get(element);
+            if (count == null || count == 0)
+                return new Difference(element, count(e, element), count(a, element));
+            counts.put(element, count - 1);
+        }
+        for (Map.Entry<Object, Integer> count : counts.entrySet()) {
+            if (count.getValue() != 0)
+                return new Difference(count.getKey(), count(e, count.getKey()), count(a, count.getKey()));
+        }
+        return null;
+    }
+
+    private static Difference difference(int[] expected, int[] actual) {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int v : expected) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        long range = (long) max - min + 1;
+        if (expected.length > 0 && range <= Math.max(COUNTING_RANGE, 2L * expected.length)) {
+            int[] counts = new int[(int) range];
+            for (int v : expected)
+                counts[v - min]++;
+            for (int v : actual) {
+                if (v < min || v > max || counts[v - min] == 0) // More occurrences than expected
+                    return new Difference(v, count(expected, v), count(actual, v));
+                counts[v - min]--;
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) // Fewer occurrences than expected
+                    return new Difference(min + i, count(expected, min + i), count(actual, min + i));
+            }
+            return null;
+        }
+
+        int[] a = sorted(expected), b = sorted(actual);
+        int i = Arrays.mismatch(a, b);
+        if (i < 0)
+            return null;
+        // Both sorted arrays agree up to i, so the smaller of the two elements at i occurs more in its own array
+        int v = i >= a.length ? b[i] : i >= b.length ? a[i] : Math.min(a[i], b[i]);
+        return new Difference(v, count(expected, v), count(actual, v));
+    }
+
+    private static Difference difference(long[] expected, long[] actual) {
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (long v : expected) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        long range = max - min + 1; // Negative if it overflows
+        if (expected.length > 0 && range > 0 && range <= Math.max(COUNTING_RANGE, 2L * expected.length)) {
+            int[] counts = new int[(int) range];
+            for (long v : expected)
+                counts[(int) (v - min)]++;
+            for (long v : actual) {
+                if (v < min || v > max || counts[(int) (v - min)] == 0) // More occurrences than expected
+                    return new Difference(v, count(expected, v), count(actual, v));
+                counts[(int) (v - min)]--;
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) // Fewer occurrences than expected
+                    return new Difference(min + i, count(expected, min + i), count(actual, min + i));
+            }
+            return null;
+        }
+
+        long[] a = sorted(expected), b = sorted(actual);
+        int i = Arrays.mismatch(a, b);
+        if (i < 0)
+            return null;
+        long v = i >= a.length ? b[i] : i >= b.length ? a[i] : Math.min(a[i], b[i]);
+        return new Difference(v, count(expected, v), count(actual, v));
+    }
+
+    private static int count(int[] values, int value) {
+        int count = 0;
+        for (int v : values)
+            count += v == value ? 1 : 0;
+        return count;
+    }
+
+    private static int count(long[] values, long value) {
+        int count = 0;
+        for (long v : values)
+            count += v == value ? 1 : 0;
+        return count;
+    }
+
+    private static int count(Object[] values, Object value) {
+        int count = 0;
+        for (Object v : values)
+            count += Objects.equals(v, value) ? 1 : 0;
+        return count;
+    }
+
+    private static int[] ints(char[] values) {
+        int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+            ints[i] = values[i];
+        return ints;
+    }
+
+    /**
+     * Is the value one of the elements?
+     * @param elements An array or Iterable.
+     * @param value The value to look for.
+     */
+    public static boolean contains(Object elements, Object value) {
+        switch (elements) {
+            case int[] array when value instanceof Integer v -> {
+                for (int element : array) {
+                    if (element == v)
+                        return true;
+                }
+                return false;
+            }
+            case long[] array when value instanceof Long v -> {
+                for (long element : array) {
+                    if (element == v)
+                        return true;
+                }
+                return false;
+            }
+            case double[] array when value instanceof Double v -> {
+                for (double element : array) {
+                    if (Double.compare(element, v) == 0) // Same as Double.equals
+                        return true;
+                }
+                return false;
+            }
+            case char[] array when value instanceof Character v -> {
+                for (char element : array) {
+                    if (element == v)
+                        return true;
+                }
+                return false;
+            }
+            default -> {
+                return Arrays.asList(boxed(elements)).contains(value);
+            }
+        }
+    }
+
+    /**
+     * A sorted copy, by LSD radix sort (4 passes of 8 bits) for large arrays, which takes linear time.
+     */
+    private static int[] sorted(int[] values) {
+        int[] a = values.clone();
+        if (a.length < RADIX_THRESHOLD) {
+            Arrays.sort(a);
+            return a;
+        }
+        int[] b = new int[a.length];
+        int[] count = new int[257];
+        for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+            int flip = shift == Integer.SIZE - 8 ? 0x80 : 0; // Negative numbers first
+            Arrays.fill(count, 0);
+            for (int v : a)
+                count[(((v >>> shift) & 0xFF) ^ flip) + 1]++;
+            if (count[(((a[0] >>> shift) & 0xFF) ^ flip) + 1] == a.length)
+                continue; // Every number has the same byte, e.g. small numbers' high bytes
+            for (int i = 1; i < count.length; i++)
+                count[i] += count[i - 1];
+            for (int v : a)
+                b[count[((v >>> shift) & 0xFF) ^ flip]++] = v;
+            int[] swap = a;
+            a = b;
+            b = swap;
+        }
+        return a;
+    }
+
+    /**
+     * A sorted copy, by LSD radix sort (8 passes of 8 bits) for large arrays, which takes linear time.
+     */
+    private static long[] sorted(long[] values) {
+        long[] a = values.clone();
+        if (a.length < RADIX_THRESHOLD) {
+            Arrays.sort(a);
+            return a;
+        }
+        long[] b = new long[a.length];
+        int[] count = new int[257];
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            int flip = shift == Long.SIZE - 8 ? 0x80 : 0; // Negative numbers first
+            Arrays.fill(count, 0);
+            for (long v : a)
+                count[((int) ((v >>> shift) & 0xFF) ^ flip) + 1]++;
+            if (count[((int) ((a[0] >>> shift) & 0xFF) ^ flip) + 1] == a.length)
+                continue; // Every number has the same byte, e.g. small numbers' high bytes
+            for (int i = 1; i < count.length; i++)
+                count[i] += count[i - 1];
+            for (long v : a)
+                b[count[(int) ((v >>> shift) & 0xFF) ^ flip]++] = v;
+            long[] swap = a;
+            a = b;
+            b = swap;
+        }
+        return a;
+    }
+
+    /**
+     * The doubles' bit patterns, which are equal if and only if the doubles are {@link Double#equals}.
+     */
+    private static long[] bits(double[] values) {
+        long[] bits = new long[values.length];
+        for (int i = 0; i < values.length; i++)
+            bits[i] = Double.doubleToLongBits(values[i]);
+        return bits;
+    }
+
+    /**
+     * The elements of an array or Iterable as a primitive array, if they're all numbers or characters of the same
+     * type (and not null). Primitive arrays are returned as they are.
+     * @return An <code>int[]</code>, <code>long[]</code>, <code>double[]</code> or <code>char[]</code>, or null.
+     */
+    static Object primitive(Object value) {
+        if (value instanceof int[] || value instanceof long[] || value instanceof double[] || value instanceof char[])
+            return value;
+
+        Object[] elements;
+        if (value instanceof Object[] array)
+            elements = array;
+        else if (value instanceof Collection<?> collection && Callbacks.isContainer(collection))
+            elements = collection.toArray(); // Doesn't run student code, unlike other collections' toArray
+        else
+            return null; // Other Iterables are left to the callers, which go through Traversal
+        if (elements.length == 0 || elements[0] == null)
+            return null;
+
+        Class<?> type = elements[0].getClass();
+        for (Object element : elements) {
+            if (element == null || element.getClass() != type)
+                return null;
+        }
+        if (type == Integer.class) {
+            int[] array = new int[elements.length];
+            for (int i = 0; i < array.length; i++)
+                array[i] = (Integer) elements[i];
+            return array;
+        }
+        if (type == Long.class) {
+            long[] array = new long[elements.length];
+            for (int i = 0; i < array.length; i++)
+                array[i] = (Long) elements[i];
+            return array;
+        }
+        if (type == Double.class) {
+            double[] array = new double[elements.length];
+            for (int i = 0; i < array.length; i++)
+                array[i] = (Double) elements[i];
+            return array;
+        }
+        if (type == Character.class) {
+            char[] array = new char[elements.length];
+            for (int i = 0; i < array.length; i++)
+                array[i] = (Character) elements[i];
+            return array;
+        }
+        return null;
+    }
+
+    /**
+     * The elements of an array (of any type) or Iterable as an array of objects.
+     */
+    static Object[] boxed(Object value) {
+        if (value == null)
+            return null;
+        if (value.getClass().isArray() && value.getClass().getComponentType().isPrimitive()) {
+            Object[] boxed = new Object[java.lang.reflect.Array.getLength(value)];
+            for (int i = 0; i < boxed.length; i++)
+                boxed[i] = java.lang.reflect.Array.get(value, i);
+            return boxed;
+        }
+        return Extensions.toArray(value);
+    }
+}
@@ -1,6 +1,7 @@
 package extensions;
 
 import evaluator.Submission;
+import reflection.Callbacks;
 
 import java.io.File;
 import java.lang.reflect.Field;
@@ -36,12 +37,58 @@ public class Extensions {
         return current.compareTo(previous) >= 0;
     }
 
-    public static <T> List<T> copy(Iterable<T> iterable) {
-        List<T> list = new ArrayList<>();
-        for (T item : iterable) {
-            list.add(item);
+    /**
+     * Stands in for a value too large to copy, e.g. in messages.
+     */
+    private record Summary(String text) {
+        @Override
+        public String toString() {
+            return text;
         }
-        return list;
+    }
+
+    /**
+     * A snapshot of a value whose content may change later, e.g. an argument that the called method sorts. Arrays
+     * and JDK containers (see {@link Callbacks#isContainer(Object)}) with up to the given number of elements are
+     * copied, larger ones are summarised (e.g. <code>int[1000000]</code>) without copying, and any other value is
+     * returned as it is.
+     * @param value The value.
+     * @param limit The largest number of elements to copy.
+     * @return The copy, the summary or the value itself.
+     */
+    public static Object snapshot(Object value, int limit) {
+        if (value == null)
+            return null;
+        if (value.getClass().isArray()) {
+            int length = java.lang.reflect.Array.getLength(value);
+            if (length <= limit)
+                return copyArray(value);
+            return new Summary(value.getClass().getComponentType().getSimpleName() + "[" + length + "]");
+        }
+        if (value instanceof Collection<?> collection && Callbacks.isContainer(collection)) {
+            if (collection.size() <= limit)
+                return new ArrayList<>(collection);
+            return new Summary(value.getClass().getSimpleName() + " of " + collection.size() + " element(s)");
+        }
+        return value;
+    }
+
+    /**
+     * A shallow copy of an array of any type, including arrays of primitives.
+     */
+    public static Object copyArray(Object array) {
+        int length = java.lang.reflect.Array.getLength(array);
+        Object copy = java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * The elements of an Iterable, within the budget of {@link Traversal}.
+     * @throws Traversal.BudgetExceededException If the Iterable has too many elements or takes too long.
+     */
+    public static <T> List<T> copy(Iterable<T> iterable) {
+        return Traversal.toList(iterable);
     }
 
     public static <T> boolean hasNoDuplicates(Iterable<T> sorted) {
@@ -103,25 +150,15 @@ public class Extensions {
         return true;
     }
 
+    /**
+     * Renders the elements of an Iterable, within the budget of {@link Traversal}. If it runs out, the elements
+     * rendered so far are followed by an ellipsis.
+     */
     public static <T> String toString(Iterable<T> iterable) {
-        Iterator<T> iterator = iterable.iterator();
-
-        // Empty Iterable
-        if (!iterator.hasNext())
-            return "[]";
-
-        // 1 Element
-        Object current = iterator.next();
-        if (!iterator.hasNext())
-            return "[" + Extensions.toStringOrDefault(current) + "]";
-
-        // >= 2 Elements
-        StringBuilder str = new StringBuilder("[" + Extensions.toStringOrDefault(current));
-        while (iterator.hasNext()) {
-            current = iterator.next();
-            str.append(", ").append(Extensions.toStringOrDefault(current));
-        }
-        return str.append("]").toString();
+        StringJoiner str = new StringJoiner(", ", "[", "]");
+        if (!Traversal.forEach(iterable, Traversal.MAX_ELEMENTS, Traversal.MAX_MILLIS, e -> str.add(toStringOrDefault(e))))
+            str.add("...");
+        return str.toString();
     }
 
     private static <T> String declaration(TypeVariable<Class<T>> type) {
@@ -152,9 +189,7 @@ public class Extensions {
     public static <T> T[] toArray(Iterable<T> iterable) {
         if (iterable == null)
             return null;
-        List<T> list = new LinkedList<>();
-        for (T item : iterable)
-            list.add(item);
+        List<T> list = Traversal.toList(iterable);
         return list.toArray((T[]) new Object[list.size()]);
     }
 
@@ -254,17 +289,16 @@ public class Extensions {
         return new HashSet<>(Arrays.asList(toArray(o)));
     }
 
+    /**
+     * Renders a value, including the elements of arrays and Iterables. The value's own <code>toString</code> (and
+     * iterator) may be student code, so it runs under {@link Callbacks#call(java.util.concurrent.Callable)}; if it
+     * fails or takes too long, the value's fields are rendered instead.
+     */
     public static String toStringOrDefault(Object o) {
         try {
-            if (o == null)
-                return "null";
-
-            if (o.getClass().isArray())
-                return "[" + joinToString((Object[]) o, Extensions::toStringOrDefault) + "]";
-            else if (Iterable.class.isAssignableFrom(o.getClass()))
-                return "[" + joinToString((Iterable<?>) o, Extensions::toStringOrDefault) + "]";
-
-            return Objects.toString(o);
+            if (Callbacks.isInert(o))
+                return render(o);
+            return Callbacks.call(() -> render(o));
         } catch (Throwable e1) {
             try {
                 return stringify(o);
@@ -274,6 +308,24 @@ public class Extensions {
         }
     }
 
+    private static String render(Object o) {
+        if (o == null)
+            return "null";
+
+        if (o.getClass().isArray() && o.getClass().getComponentType().isPrimitive()) {
+            Object[] boxed = new Object[java.lang.reflect.Array.getLength(o)];
+            for (int i = 0; i < boxed.length; i++)
+                boxed[i] = java.lang.reflect.Array.get(o, i);
+            return "[" + joinToString(boxed, Extensions::toStringOrDefault) + "]";
+        }
+        if (o.getClass().isArray())
+            return "[" + joinToString((Object[]) o, Extensions::toStringOrDefault) + "]";
+        else if (Iterable.class.isAssignableFrom(o.getClass()))
+            return toString((Iterable<?>) o);
+
+        return Objects.toString(o);
+    }
+
     public static String stringify(Object object) {
         if (object == null)
             return "null";
@@ -308,6 +360,10 @@ public class Extensions {
         return str.substring(0, str.length() - 2) + "]";
     }
 
+    /**
+     * A new array of random integers, different every time. For large inputs shared by every submission, prefer
+     * {@link evaluator.Fixtures}, which generates them once and doesn't box them.
+     */
     public static Integer[] randomIntArray(int length, int min, int max) {
         Integer[] array = new Integer[length];
         for (int i = 0; i < length;  i++) {
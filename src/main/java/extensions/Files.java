@@ -1,9 +1,15 @@
 package extensions;
 
+import loading.ClassFiles;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 public class Files {
 
@@ -48,6 +54,131 @@ public class Files {
         return null;
     }
 
+    /**
+     * Compresses every file inside a directory into a zip archive.
+     * @param root The directory to compress.
+     * @return The zip archive's bytes. Entry names are relative to the directory.
+     */
+    public static byte[] zip(File root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            Path base = root.toPath();
+            for (File file : walk(root)) {
+                if (!file.isFile())
+                    continue;
+                zip.putNextEntry(new ZipEntry(base.relativize(file.toPath()).toString().replace(File.separatorChar, '/')));
+                java.nio.file.Files.copy(file.toPath(), zip);
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Extracts a zip archive into a directory, creating it if needed.
+     * @param archive The zip archive's bytes.
+     * @param destination The directory to extract to.
+     */
+    public static void unzip(byte[] archive, File destination) throws IOException {
+        unzip(archive, destination, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Extracts a zip archive into a directory, creating it if needed, as long as it stays within a size limit. The
+     * limit applies to the bytes actually extracted, not to the sizes the archive declares, which may be forged.
+     * @param archive The zip archive's bytes.
+     * @param destination The directory to extract to.
+     * @param maxBytes The largest number of bytes to extract, across all entries.
+     * @param maxEntries The largest number of entries to extract.
+     * @throws IOException If the archive can't be read, or exceeds a limit; it may have been partially extracted.
+     */
+    public static void unzip(byte[] archive, File destination, long maxBytes, int maxEntries) throws IOException {
+        Path base = destination.toPath().toAbsolutePath().normalize();
+        java.nio.file.Files.createDirectories(base);
+        long extracted = 0;
+        int entries = 0;
+        byte[] buffer = new byte[8192];
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (++entries > maxEntries)
+                    throw new IOException("Zip archive has more than " + maxEntries + " entries");
+                Path target = base.resolve(entry.getName()).normalize();
+                if (!target.startsWith(base))
+                    throw new IOException("Zip entry is outside of the destination directory: " + entry.getName());
+                if (entry.isDirectory())
+                    java.nio.file.Files.createDirectories(target);
+                else {
+                    java.nio.file.Files.createDirectories(target.getParent());
+                    try (OutputStream out = java.nio.file.Files.newOutputStream(target)) {
+                        for (int read; (read = zip.read(buffer)) != -1; ) {
+                            extracted += read;
+                            if (extracted > maxBytes)
+                                throw new IOException("Zip archive extracts to more than " + maxBytes + " bytes");
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a directory along with everything inside it, creating the destination if needed.
+     * @param source The directory to copy.
+     * @param destination The directory to copy to.
+     */
+    public static void copy(File source, File destination) throws IOException {
+        Path base = source.toPath();
+        Path target = destination.toPath();
+        java.nio.file.Files.createDirectories(target);
+        for (File file : walk(source)) {
+            Path copy = target.resolve(base.relativize(file.toPath()));
+            if (file.isDirectory())
+                java.nio.file.Files.createDirectories(copy);
+            else
+                java.nio.file.Files.copy(file.toPath(), copy, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Hashes the contents of every file with a given extension inside a directory, along with their relative paths.
+     * @param root The directory.
+     * @param extension The extension of the files to hash, e.g. "java".
+     * @return The hexadecimal SHA-256 digest of the files, independent of the order they are listed in.
+     */
+    public static String hash(File root, String extension) throws IOException {
+        Path base = root.toPath();
+        SortedMap<String, File> files = new TreeMap<>();
+        for (File file : walk(root)) {
+            if (file.isFile() && FilenameUtils.getExtension(file.getName()).equals(extension))
+                files.put(base.relativize(file.toPath()).toString().replace(File.separatorChar, '/'), file);
+        }
+
+        MessageDigest digest = ClassFiles.sha256();
+        for (Map.Entry<String, File> file : files.entrySet()) {
+            digest.update(file.getKey().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(java.nio.file.Files.readAllBytes(file.getValue().toPath()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Deletes a file or a directory along with everything inside it.
+     * @param root The file or directory to delete.
+     * @return True if everything was deleted; False otherwise.
+     */
+    public static boolean delete(File root) {
+        boolean deleted = true;
+        File[] children = root.listFiles();
+        if (children != null) {
+            for (File child : children)
+                deleted &= delete(child);
+        }
+        return root.delete() && deleted;
+    }
+
     public static String getNameWithoutExtension(File file) {
         return FilenameUtils.getBaseName(file.getName());
     }
@@ -0,0 +1,180 @@
+package extensions;
+
+import reflection.Callbacks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Iterates over Iterables that may have been implemented by students, within a budget of elements and of time, so
+ * that a broken iterator (e.g. one whose <code>hasNext</code> never returns false) or a huge collection can't hold
+ * the evaluator's thread forever. Elements are visited as they are produced, without copying the collection first,
+ * so comparisons stop at the first mismatch.
+ * <p>
+ * The budget is checked between elements. Iterators, and anything else run for each element, are themselves student
+ * code, so they run under {@link Callbacks#call(java.util.concurrent.Callable)}, whose timeout stops an iterator
+ * that loops inside a single call to <code>hasNext</code> or <code>next</code>. The time budget is half of that
+ * timeout, so a slow Iterable is reliably reported as exceeding the budget rather than as a timeout. Arrays and JDK
+ * containers (see {@link Callbacks#isContainer(Object)}) have a known size and can't loop forever, so comparisons
+ * between them aren't budgeted.
+ *
+ * @author Afonso Caniço
+ */
+public class Traversal {
+
+    public static final int MAX_ELEMENTS = 1_000_000;
+
+    public static final long MAX_MILLIS = Callbacks.TIMEOUT_MILLIS / 2; // Runs out before the callback times out
+
+    /**
+     * Thrown when an Iterable has more elements, or takes longer to iterate over, than the budget allows.
+     */
+    public static class BudgetExceededException extends RuntimeException {
+
+        public BudgetExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Visits the elements of an Iterable, in order, until it runs out of elements or the budget runs out.
+     * @param iterable The Iterable.
+     * @param maxElements The largest number of elements to visit.
+     * @param maxMillis The longest time to spend iterating, including the action.
+     * @param action What to do with each element.
+     * @return True if every element was visited; False if the budget ran out first.
+     */
+    public static <T> boolean forEach(Iterable<T> iterable, int maxElements, long maxMillis, Consumer<? super T> action) {
+        return Callbacks.call(() -> iterate(iterable, maxElements, maxMillis, action));
+    }
+
+    private static <T> boolean iterate(Iterable<T> iterable, int maxElements, long maxMillis, Consumer<? super T> action) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        Iterator<T> iterator = iterable.iterator();
+        for (int count = 0; iterator.hasNext(); count++) {
+            if (count == maxElements || System.nanoTime() - deadline > 0)
+                return false;
+            action.accept(iterator.next());
+        }
+        return true;
+    }
+
+    /**
+     * The elements of an Iterable, in order, within the default budget.
+     * @throws BudgetExceededException If the Iterable has too many elements or takes too long to iterate over.
+     */
+    public static <T> List<T> toList(Iterable<T> iterable) throws BudgetExceededException {
+        List<T> list = new ArrayList<>();
+        if (!forEach(iterable, MAX_ELEMENTS, MAX_MILLIS, list::add))
+            throw exceeded(list.size());
+        return list;
+    }
+
+    /**
+     * The position of the first element that differs (by {@link Objects#equals(Object, Object)}) between two arrays
+     * or Iterables. Arrays and JDK containers are compared directly, with {@link Arrays#mismatch}; other Iterables
+     * are iterated over at the same time as the other value, within the default budget. If one is a prefix of the
+     * other, that's the length of the shorter one.
+     * @param expected An array (of any type) or Iterable.
+     * @param actual An array (of any type) or Iterable.
+     * @return The position, or -1 if both have the same elements in the same order.
+     * @throws BudgetExceededException If an Iterable other than a JDK container has too many elements or takes too
+     * long to iterate over.
+     */
+    public static int mismatch(Object expected, Object actual) throws BudgetExceededException {
+        if (expected != null && actual != null && expected.getClass() == actual.getClass() && expected.getClass().getComponentType() != null
+                && expected.getClass().getComponentType().isPrimitive())
+            return primitiveMismatch(expected, actual); // No student code involved
+        Object[] e = elements(expected);
+        Object[] a = elements(actual);
+        if (e != null && a != null) {
+            if (Callbacks.isInert(e) && Callbacks.isInert(a))
+                return Arrays.mismatch(e, a);
+            return Callbacks.call(() -> Arrays.mismatch(e, a)); // Elements' equals may be student code
+        }
+        return Callbacks.call(() -> compare(expected, actual));
+    }
+
+    private static int primitiveMismatch(Object expected, Object actual) {
+        return switch (expected) {
+            case int[] e -> Arrays.mismatch(e, (int[]) actual);
+            case long[] e -> Arrays.mismatch(e, (long[]) actual);
+            case double[] e -> Arrays.mismatch(e, (double[]) actual);
+            case char[] e -> Arrays.mismatch(e, (char[]) actual);
+            case byte[] e -> Arrays.mismatch(e, (byte[]) actual);
+            case short[] e -> Arrays.mismatch(e, (short[]) actual);
+            case float[] e -> Arrays.mismatch(e, (float[]) actual);
+            default -> Arrays.mismatch((boolean[]) expected, (boolean[]) actual);
+        };
+    }
+
+    /**
+     * The elements of an array (boxed, if primitive) or of a JDK container (see {@link Callbacks#isContainer(Object)}),
+     * whose <code>toArray</code> doesn't run student code.
+     * @return The elements, or null if the value is neither, e.g. for a wrapper of a student's collection.
+     */
+    private static Object[] elements(Object value) {
+        if (value instanceof Object[] array)
+            return array;
+        if (value instanceof Collection<?> collection && Callbacks.isContainer(collection))
+            return collection.toArray();
+        if (value != null && value.getClass().isArray()) {
+            Object[] boxed = new Object[java.lang.reflect.Array.getLength(value)];
+            for (int i = 0; i < boxed.length; i++)
+                boxed[i] = java.lang.reflect.Array.get(value, i);
+            return boxed;
+        }
+        return null;
+    }
+
+    private static int compare(Object expected, Object actual) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_MILLIS);
+        Iterator<?> e = iterator(expected);
+        Iterator<?> a = iterator(actual);
+        for (int i = 0; ; i++) {
+            boolean hasExpected = e.hasNext();
+            boolean hasActual = a.hasNext();
+            if (!hasExpected && !hasActual)
+                return -1;
+            if (hasExpected != hasActual)
+                return i;
+            if (i == MAX_ELEMENTS || System.nanoTime() - deadline > 0)
+                throw exceeded(i);
+            if (!Objects.equals(e.next(), a.next()))
+                return i;
+        }
+    }
+
+    private static BudgetExceededException exceeded(int count) {
+        if (count >= MAX_ELEMENTS)
+            return new BudgetExceededException("Iterable has more than " + MAX_ELEMENTS + " element(s)");
+        return new BudgetExceededException("Iterating over the first " + count + " element(s) took longer than " + MAX_MILLIS + " ms");
+    }
+
+    private static Iterator<?> iterator(Object value) {
+        if (value instanceof Iterable<?> iterable)
+            return iterable.iterator();
+        if (value instanceof Object[] array)
+            return Arrays.asList(array).iterator();
+        if (value != null && value.getClass().isArray()) { // Primitive array, boxed one element at a time
+            int length = java.lang.reflect.Array.getLength(value);
+            return new Iterator<>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < length;
+                }
+
+                @Override
+                public Object next() {
+                    if (i == length)
+                        throw new NoSuchElementException();
+                    return java.lang.reflect.Array.get(value, i++);
+                }
+            };
+        }
+        throw new IllegalArgumentException("Cannot iterate over " + (value == null ? "null" : "object of type " + value.getClass()) + "!");
+    }
+}
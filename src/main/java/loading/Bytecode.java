@@ -0,0 +1,254 @@
+package loading;
+
+import java.io.IOException;
+import java.lang.classfile.*;
+import java.lang.classfile.constantpool.*;
+import java.lang.classfile.instruction.*;
+import java.util.*;
+
+/**
+ * Reads the methods of a class file through the JDK's class file API ({@link java.lang.classfile}), enough to compare
+ * their bytecode across compilations. Constant pool references are resolved to the symbols they name, and branch
+ * targets to labels numbered in order, so a method's canonical form doesn't depend on where other members happen to
+ * be placed in the class file.
+ *
+ * @author Afonso Caniço
+ */
+public class Bytecode {
+
+    /**
+     * A method declared in a class file.
+     */
+    public class Method {
+
+        private final String name;
+
+        private final String descriptor;
+
+        private final String canonicalCode;
+
+        private final Set<String> referencedMethods = new LinkedHashSet<>();
+
+        private final Set<String> instantiatedClasses = new LinkedHashSet<>();
+
+        private Method(MethodModel method) {
+            this.name = method.methodName().stringValue();
+            this.descriptor = method.methodType().stringValue();
+            this.canonicalCode = method.code().map(this::disassemble).orElse("");
+        }
+
+        public String getOwner() {
+            return Bytecode.this.name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * @return The method's key, as in {@link Bytecode#key(String, String, String)}.
+         */
+        public String getKey() {
+            return key(getOwner(), name, descriptor);
+        }
+
+        /**
+         * The method's instructions, with every constant pool operand replaced by the symbol it refers to.
+         * @return The canonical form of the method's code, or an empty string if it is abstract or native.
+         */
+        public String getCanonicalCode() {
+            return canonicalCode;
+        }
+
+        /**
+         * @return The keys of the methods this method calls or references (e.g. lambda bodies), as in
+         * {@link Bytecode#key(String, String, String)}.
+         */
+        public Set<String> getReferencedMethods() {
+            return Collections.unmodifiableSet(referencedMethods);
+        }
+
+        /**
+         * @return The binary names of the classes this method instantiates.
+         */
+        public Set<String> getInstantiatedClasses() {
+            return Collections.unmodifiableSet(instantiatedClasses);
+        }
+
+        private String disassemble(CodeModel code) {
+            List<CodeElement> elements = code.elementList();
+
+            // Number the labels that are jumped to, in the order they appear in the code
+            Set<Label> targets = new HashSet<>();
+            for (CodeElement element : elements) {
+                switch (element) {
+                    case BranchInstruction branch -> targets.add(branch.target());
+                    case TableSwitchInstruction table -> {
+                        targets.add(table.defaultTarget());
+                        table.cases().forEach(c -> targets.add(c.target()));
+                    }
+                    case LookupSwitchInstruction lookup -> {
+                        targets.add(lookup.defaultTarget());
+                        lookup.cases().forEach(c -> targets.add(c.target()));
+                    }
+                    default -> { }
+                }
+            }
+            for (ExceptionCatch handler : code.exceptionHandlers())
+                targets.addAll(List.of(handler.tryStart(), handler.tryEnd(), handler.handler()));
+            Map<Label, Integer> labels = new HashMap<>();
+            for (CodeElement element : elements) {
+                if (element instanceof LabelTarget target && targets.contains(target.label()))
+                    labels.putIfAbsent(target.label(), labels.size());
+            }
+
+            StringBuilder s = new StringBuilder();
+            for (CodeElement element : elements) {
+                switch (element) {
+                    case LabelTarget target when labels.containsKey(target.label()) ->
+                            s.append('L').append(labels.get(target.label())).append(":\n");
+                    case Instruction instruction ->
+                            s.append(instruction.opcode().name()).append(operands(instruction, labels)).append('\n');
+                    default -> { } // Line numbers, local variable names and other debugging information
+                }
+            }
+            for (ExceptionCatch handler : code.exceptionHandlers()) {
+                s.append("catch L").append(labels.get(handler.tryStart())).append("-L").append(labels.get(handler.tryEnd()))
+                        .append(" -> L").append(labels.get(handler.handler())).append(' ')
+                        .append(handler.catchType().map(Bytecode::describe).orElse("any")).append('\n');
+            }
+            return s.toString();
+        }
+
+        private String operands(Instruction instruction, Map<Label, Integer> labels) {
+            return switch (instruction) {
+                case InvokeInstruction invoke -> {
+                    referencedMethods.add(key(binaryName(invoke.owner()), invoke.name().stringValue(), invoke.type().stringValue()));
+                    yield " " + describe(invoke.method());
+                }
+                case InvokeDynamicInstruction invoke -> { // Lambda bodies are referenced by the bootstrap arguments
+                    for (LoadableConstantEntry argument : invoke.invokedynamic().bootstrap().arguments()) {
+                        if (argument instanceof MethodHandleEntry handle && !(handle.reference() instanceof FieldRefEntry)) {
+                            MemberRefEntry method = handle.reference();
+                            referencedMethods.add(key(binaryName(method.owner()), method.name().stringValue(), method.type().stringValue()));
+                        }
+                    }
+                    yield " " + describe(invoke.invokedynamic());
+                }
+                case NewObjectInstruction instantiation -> {
+                    instantiatedClasses.add(binaryName(instantiation.className()));
+                    yield " " + describe(instantiation.className());
+                }
+                case FieldInstruction field -> " " + describe(field.field());
+                case TypeCheckInstruction check -> " " + describe(check.type());
+                case NewReferenceArrayInstruction array -> " " + describe(array.componentType());
+                case NewMultiArrayInstruction array -> " " + describe(array.arrayType()) + " " + array.dimensions();
+                case NewPrimitiveArrayInstruction array -> " " + array.typeKind();
+                case ConstantInstruction constant -> " " + constant.typeKind() + " " + constant.constantValue();
+                case LoadInstruction load -> " " + load.slot();
+                case StoreInstruction store -> " " + store.slot();
+                case IncrementInstruction increment -> " " + increment.slot() + " " + increment.constant();
+                case BranchInstruction branch -> " L" + labels.get(branch.target());
+                case TableSwitchInstruction table -> {
+                    StringBuilder s = new StringBuilder(" ").append(table.lowValue()).append('-').append(table.highValue());
+                    for (SwitchCase c : table.cases())
+                        s.append(' ').append(c.caseValue()).append(":L").append(labels.get(c.target()));
+                    yield s.append(" default:L").append(labels.get(table.defaultTarget())).toString();
+                }
+                case LookupSwitchInstruction lookup -> {
+                    StringBuilder s = new StringBuilder();
+                    for (SwitchCase c : lookup.cases())
+                        s.append(' ').append(c.caseValue()).append(":L").append(labels.get(c.target()));
+                    yield s.append(" default:L").append(labels.get(lookup.defaultTarget())).toString();
+                }
+                default -> ""; // No operands, e.g. arithmetic, or only the stack's types
+            };
+        }
+    }
+
+    private final String name;
+
+    private final String superclass;
+
+    private final List<Method> methods = new ArrayList<>();
+
+    /**
+     * Parses a class file.
+     * @param classFile The class file's contents.
+     * @throws IOException If the class file is malformed.
+     */
+    public Bytecode(byte[] classFile) throws IOException {
+        try {
+            ClassModel model = ClassFile.of().parse(classFile);
+            name = binaryName(model.thisClass());
+            superclass = model.superclass().map(Bytecode::binaryName).orElse(null); // Only java.lang.Object has none
+            for (MethodModel method : model.methods())
+                methods.add(new Method(method));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed class file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Identifies a method across classes.
+     * @param owner The binary name of the declaring class, e.g. <code>a.b.C$D</code>.
+     * @param name The method's name.
+     * @param descriptor The method's descriptor, e.g. <code>(I)V</code>.
+     * @return The method's key.
+     */
+    public static String key(String owner, String name, String descriptor) {
+        return owner + "." + name + descriptor;
+    }
+
+    /**
+     * @return The binary name of the class, e.g. <code>a.b.C$D</code>.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The binary name of the class's superclass, or null if it is <code>java.lang.Object</code>.
+     */
+    public String getSuperclassName() {
+        return superclass;
+    }
+
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    private static String binaryName(ClassEntry type) {
+        return type.asInternalName().replace('/', '.');
+    }
+
+    /**
+     * Describes the symbol a constant pool entry refers to.
+     * @param entry The constant pool entry.
+     * @return A description of the entry, independent of the constant pool's layout.
+     */
+    private static String describe(PoolEntry entry) {
+        return switch (entry) {
+            case ClassEntry type -> "class " + binaryName(type);
+            case StringEntry string -> "\"" + string.stringValue() + "\"";
+            case MemberRefEntry member -> binaryName(member.owner()) + "." + member.name().stringValue() + ":" + member.type().stringValue();
+            case MethodHandleEntry handle -> "handle " + handle.kind() + " " + describe(handle.reference());
+            case MethodTypeEntry type -> "type " + type.descriptor().stringValue();
+            case DynamicConstantPoolEntry dynamic -> {
+                BootstrapMethodEntry bootstrap = dynamic.bootstrap();
+                StringBuilder s = new StringBuilder("dynamic ").append(dynamic.name().stringValue()).append(':')
+                        .append(dynamic.type().stringValue()).append(" via ").append(describe(bootstrap.bootstrapMethod()));
+                for (LoadableConstantEntry argument : bootstrap.arguments())
+                    s.append(", ").append(describe(argument));
+                yield s.toString();
+            }
+            case LoadableConstantEntry constant -> constant.typeKind() + " " + constant.constantValue(); // Numbers
+            case Utf8Entry utf8 -> utf8.stringValue();
+            default -> entry.toString();
+        };
+    }
+}
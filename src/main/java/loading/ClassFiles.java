@@ -0,0 +1,139 @@
+package loading;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Reads the compiled class files of already loaded classes, e.g. to ship a tester to another JVM or to detect
+ * whether it changed between runs.
+ *
+ * @author Afonso Caniço
+ */
+public class ClassFiles {
+
+    private static final Map<Path, String> LIBRARY_HASHES = new java.util.concurrent.ConcurrentHashMap<>(); // By location
+
+    /**
+     * Reads the class files of a class, along with its nested and anonymous classes and those of its superclasses.
+     * @param type The class.
+     * @param upTo The first superclass to leave out, along with its own superclasses. May be null.
+     * @return The class files' contents, by binary class name.
+     * @throws FileNotFoundException If the class file of a class can't be found.
+     */
+    public static Map<String, byte[]> read(Class<?> type, Class<?> upTo) throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (Class<?> current = type; current != null && current != upTo && current != Object.class; current = current.getSuperclass())
+            add(current, classes);
+        return classes;
+    }
+
+    private static void add(Class<?> type, Map<String, byte[]> classes) throws IOException {
+        if (classes.containsKey(type.getName()))
+            return;
+        byte[] bytes = read(type.getClassLoader(), type.getName());
+        if (bytes == null)
+            throw new FileNotFoundException("Could not find the class file of " + type.getName());
+        classes.put(type.getName(), bytes);
+
+        for (Class<?> nested : type.getDeclaredClasses())
+            add(nested, classes);
+
+        // Anonymous classes aren't reflected, but are numbered in order
+        for (int i = 1; ; i++) {
+            String name = type.getName() + "$" + i;
+            byte[] anonymous = read(type.getClassLoader(), name);
+            if (anonymous == null)
+                break;
+            classes.put(name, anonymous);
+        }
+    }
+
+    private static byte[] read(java.lang.ClassLoader loader, String name) throws IOException {
+        if (loader == null)
+            return null;
+        try (InputStream in = loader.getResourceAsStream(name.replace('.', '/') + ".class")) {
+            return in == null ? null : in.readAllBytes();
+        }
+    }
+
+    /**
+     * Hashes a set of class files, independently of the order they were read in.
+     * @param classes The class files' contents, by binary class name. See also: {@link #read(Class, Class)}.
+     * @return The hexadecimal SHA-256 digest of all class files.
+     */
+    public static String hash(Map<String, byte[]> classes) {
+        MessageDigest digest = sha256();
+        for (String name : new TreeSet<>(classes.keySet())) {
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(classes.get(name));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes the library a class belongs to, i.e. the jar file or class folder it was loaded from, e.g. to tell
+     * results recorded by one version of the evaluator from those of another. Each library is only hashed once per
+     * process, since it can't change while its classes are in use.
+     * @param type A class of the library.
+     * @return The hexadecimal SHA-256 digest of the jar file, or of the folder's class files.
+     * @throws FileNotFoundException If the class wasn't loaded from a jar file or folder.
+     */
+    public static String hashLibrary(Class<?> type) throws IOException {
+        CodeSource source = type.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null)
+            throw new FileNotFoundException("Could not find where " + type.getName() + " was loaded from");
+        Path location;
+        try {
+            location = Path.of(source.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new FileNotFoundException("Could not find where " + type.getName() + " was loaded from: " + e.getMessage());
+        }
+
+        String hash = LIBRARY_HASHES.get(location);
+        if (hash == null) {
+            hash = hashLibrary(location);
+            LIBRARY_HASHES.put(location, hash);
+        }
+        return hash;
+    }
+
+    private static String hashLibrary(Path location) throws IOException {
+        MessageDigest digest = sha256();
+        if (!Files.isDirectory(location)) {
+            digest.update(Files.readAllBytes(location));
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(location)) {
+            classFiles = files.filter(file -> file.toString().endsWith(".class")).sorted().toList();
+        }
+        for (Path file : classFiles) {
+            digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(file));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return A new SHA-256 digest, the one used for every content hash.
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required of every JVM
+        }
+    }
+}
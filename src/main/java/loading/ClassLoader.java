@@ -11,6 +11,7 @@ import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public class ClassLoader {
@@ -20,10 +21,34 @@ public class ClassLoader {
     private static final java.util.List<URLClassLoader> loaders = new ArrayList<>();
 
     public static void flush() throws IOException {
-        for (URLClassLoader loader : loaders) {
-            loader.close();
+        synchronized (loaders) {
+            for (URLClassLoader loader : loaders) {
+                loader.close();
+            }
+            loaders.clear();
+        }
+    }
+
+    /**
+     * Closes the class loaders of the classes loaded from inside a directory, e.g. once a submission's evaluation
+     * is over. Long-running processes should call this, since loaders are otherwise kept until {@link #flush()}.
+     * @param directory The directory, e.g. a submission's folder.
+     */
+    public static void flush(File directory) throws IOException {
+        String root = directory.getAbsoluteFile().toURI().toString();
+        synchronized (loaders) {
+            Iterator<URLClassLoader> it = loaders.iterator();
+            while (it.hasNext()) {
+                URLClassLoader loader = it.next();
+                for (URL url : loader.getURLs()) {
+                    if (url.toString().startsWith(root)) {
+                        loader.close();
+                        it.remove();
+                        break;
+                    }
+                }
+            }
         }
-        loaders.clear();
     }
 
     // CAFEBABE :)
@@ -152,7 +177,9 @@ public class ClassLoader {
             URL[] classURLs = new URL[] { dir.toURI().toURL() };
             URLClassLoader classLoader = URLClassLoader.newInstance(classURLs); // DO NOT USE TRY WITH RESOURCES
             classLoader.setDefaultAssertionStatus(true);
-            loaders.add(classLoader);
+            synchronized (loaders) {
+                loaders.add(classLoader);
+            }
             return classLoader.loadClass(Files.getNameWithoutExtension(compiled));
         } catch (IllegalArgumentException | ClassNotFoundException | IOException | NoClassDefFoundError e) {
             throw new ClassLoadingException(javaFile, e);
@@ -0,0 +1,21 @@
+package reflection;
+
+/**
+ * Thrown when a callback to student code made by the evaluator itself (e.g. <code>equals</code> or
+ * <code>toString</code> on a result) doesn't return in time. See also: {@link Callbacks}.
+ *
+ * @author Afonso Caniço
+ */
+public class CallbackTimeoutException extends RuntimeException {
+
+    private final long timeoutMillis;
+
+    public CallbackTimeoutException(long timeoutMillis) {
+        super("Student code called back by the evaluator (e.g. equals, hashCode, compareTo or toString) took longer than " + timeoutMillis + " ms");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
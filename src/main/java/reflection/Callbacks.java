@@ -0,0 +1,164 @@
+package reflection;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the evaluator's own callbacks to student code, e.g. <code>equals</code>, <code>hashCode</code>,
+ * <code>compareTo</code> or <code>toString</code> when comparing or rendering results, under the same guard as
+ * explicit invocations, so that student code never runs unguarded on an evaluator thread.
+ * <p>
+ * During a test, callbacks go through the test's {@link Reflector} (see
+ * {@link Reflector#guardCallbacks(ResourceUsage, Runnable)}), with its invocation mode and quota, but with a shorter
+ * timeout. Callbacks made while already running student code (e.g. within a task) run directly, and callbacks made
+ * outside any test (e.g. while writing reports) go through a shared Reflector of their own. That one is replaced,
+ * interrupting the callback, whenever a callback through it times out, and can be released once no more callbacks
+ * are expected (see {@link #release()}).
+ *
+ * @author Afonso Caniço
+ */
+public final class Callbacks {
+
+    /**
+     * How long a single callback may take before a {@link CallbackTimeoutException} is thrown.
+     */
+    public static final long TIMEOUT_MILLIS = Reflector.CALLBACK_TIMEOUT_MILLISECONDS;
+
+    record Guard(Reflector reflector, ResourceUsage usage) { }
+
+    static final ScopedValue<Guard> GUARD = ScopedValue.newInstance();
+
+    private static final int MAX_INERT_DEPTH = 4; // Of nested arrays and collections
+
+    private static final AtomicReference<Reflector> FALLBACK = new AtomicReference<>(new Reflector());
+
+    /**
+     * The JDK's own containers, which hold their elements themselves. Wrappers and views (e.g. those of
+     * {@link Collections#unmodifiableList(List)} or {@link List#subList(int, int)}) are left out on purpose: they are
+     * JDK classes too, but iterating over them runs the code of the collection they wrap. Some of the factories share
+     * a class, e.g. <code>List.of()</code> and <code>List.of(0, 1, 2)</code>, hence <code>Set.copyOf</code>.
+     */
+    private static final Set<Class<?>> CONTAINERS = Set.copyOf(List.of(
+            ArrayList.class, LinkedList.class, ArrayDeque.class, PriorityQueue.class, Vector.class, Stack.class,
+            HashSet.class, LinkedHashSet.class, TreeSet.class, HashMap.class, LinkedHashMap.class, TreeMap.class,
+            List.of().getClass(), List.of(0).getClass(), List.of(0, 1, 2).getClass(),
+            Set.of().getClass(), Set.of(0).getClass(), Set.of(0, 1, 2).getClass(),
+            Map.of().getClass(), Map.of(0, 0).getClass(), Arrays.asList().getClass(),
+            Collections.emptyList().getClass(), Collections.emptySet().getClass(), Collections.emptyMap().getClass(),
+            Collections.singletonList(0).getClass(), Collections.singleton(0).getClass(),
+            Collections.singletonMap(0, 0).getClass()));
+
+    private Callbacks() { }
+
+    /**
+     * Runs a callback to student code under the current guard.
+     * @param callback The callback.
+     * @return The callback's result.
+     * @throws CallbackTimeoutException If the callback doesn't return in time.
+     * @throws QuotaExceededException If the submission exceeded its resource quota.
+     */
+    public static <V> V call(Callable<V> callback) {
+        Guard guard = null;
+        try {
+            if (Reflector.isGuarded())
+                return callback.call();
+            guard = GUARD.isBound() ? GUARD.get() : new Guard(FALLBACK.get(), new ResourceUsage());
+            return guard.reflector().getCallbackResult(guard.usage(), callback);
+        } catch (TimeoutException e) {
+            if (guard != null && !GUARD.isBound())
+                recycle(guard.reflector()); // Nothing else would ever stop the callback
+            throw new CallbackTimeoutException(TIMEOUT_MILLIS);
+        } catch (ExecutionException e) {
+            throw unchecked(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Evaluation was cancelled
+            throw new CancellationException("Interrupted while waiting for a callback to student code");
+        } catch (Exception e) {
+            throw unchecked(e);
+        }
+    }
+
+    /**
+     * Releases the shared Reflector used for callbacks outside any test, interrupting any callback still running
+     * through it, e.g. once an evaluation's reports are written. A new one is used by later callbacks.
+     */
+    public static void release() {
+        recycle(FALLBACK.get());
+    }
+
+    private static void recycle(Reflector fallback) {
+        if (FALLBACK.compareAndSet(fallback, new Reflector()))
+            fallback.release();
+    }
+
+    /**
+     * Are the value's <code>equals</code>, <code>hashCode</code>, <code>compareTo</code> and <code>toString</code>
+     * free of student code, so it may be compared or rendered without {@link #call(Callable)}? That's the case for
+     * JDK numbers, strings, booleans, characters and primitive arrays, and for arrays and JDK containers (see
+     * {@link #isContainer(Object)}, without a comparator of the student's) of those.
+     */
+    public static boolean isInert(Object value) {
+        try {
+            return isInert(value, 0);
+        } catch (RuntimeException e) {
+            return false; // E.g. a collection still being modified by student code that timed out
+        }
+    }
+
+    private static boolean isInert(Object value, int depth) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Character)
+            return true;
+        Class<?> type = value.getClass();
+        if (value instanceof Number)
+            return type.getClassLoader() == null; // JDK numbers only
+        if (type.isArray() && type.getComponentType().isPrimitive())
+            return true;
+        if (depth == MAX_INERT_DEPTH)
+            return false;
+        if (!(value instanceof Object[]) && (!isContainer(value) || hasComparator(value)))
+            return false;
+        Collection<?> elements = switch (value) {
+            case Object[] array -> Arrays.asList(array);
+            case Map<?, ?> map -> map.entrySet(); // The views of a JDK map are JDK code too
+            default -> (Collection<?>) value;
+        };
+        for (Object element : elements) {
+            boolean inert = value instanceof Map<?, ?> && element instanceof Map.Entry<?, ?> entry
+                    ? isInert(entry.getKey(), depth + 1) && isInert(entry.getValue(), depth + 1)
+                    : isInert(element, depth + 1);
+            if (!inert)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Is the value one of the JDK's own collections or maps, e.g. an ArrayList, a HashMap or the result of
+     * {@link List#of()}, whose iterators and <code>toArray</code> don't run any student code? Wrappers and views of
+     * other collections, e.g. {@link Collections#unmodifiableList(List)}, aren't, even though they're JDK classes.
+     * The elements themselves may still be student objects.
+     */
+    public static boolean isContainer(Object value) {
+        return value != null && CONTAINERS.contains(value.getClass());
+    }
+
+    private static boolean hasComparator(Object container) {
+        Comparator<?> comparator = switch (container) {
+            case SortedSet<?> set -> set.comparator();
+            case SortedMap<?, ?> map -> map.comparator();
+            case PriorityQueue<?> queue -> queue.comparator();
+            default -> null;
+        };
+        return comparator != null && comparator.getClass().getClassLoader() != null;
+    }
+
+    private static RuntimeException unchecked(Throwable e) {
+        if (e instanceof RuntimeException runtime)
+            return runtime;
+        if (e instanceof Error error)
+            throw error;
+        return new UndeclaredThrowableException(e);
+    }
+}
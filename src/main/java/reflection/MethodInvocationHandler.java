@@ -16,6 +16,8 @@ public final class MethodInvocationHandler implements Runnable {
 	private final Object object;
 	private Object result = null;
 	private final Object[] args;
+	private volatile ResourceUsage.Meter meter = null;
+	private volatile ResourceUsage usage = null;
 
 	public MethodInvocationHandler(Method method, Object object, Object... args) {
 		this.method = method;
@@ -29,14 +31,30 @@ public final class MethodInvocationHandler implements Runnable {
 		return result;
 	}
 
+	/**
+	 * Resources consumed by the invocation. If the invocation is still running (e.g. it timed out), returns the
+	 * resources consumed up until now.
+	 * @return The resources consumed by the invocation, or an empty measurement if it never started.
+	 */
+	public ResourceUsage getUsage() {
+		if (usage != null)
+			return usage;
+		if (meter != null)
+			return meter.sample();
+		return new ResourceUsage();
+	}
+
 	@Override
 	public void run() {
+		meter = ResourceUsage.start();
 		try {
 			result = method.invoke(object, args);
 		} catch (InvocationTargetException e) {
 			result = e.getTargetException();
 		} catch (Exception e) {
 			result = e;
+		} finally {
+			usage = meter.sample();
 		}
 	}
 }
\ No newline at end of file
@@ -18,6 +18,10 @@ public class ObjectInstantiationHandler implements Runnable {
 
     private Object object = null;
 
+    private volatile ResourceUsage.Meter meter = null;
+
+    private volatile ResourceUsage usage = null;
+
     public ObjectInstantiationHandler(Constructor<?> constructor, Object[] initArgs) {
         this.constructor = constructor;
         this.initArgs = initArgs;
@@ -29,14 +33,30 @@ public class ObjectInstantiationHandler implements Runnable {
         return object;
     }
 
+    /**
+     * Resources consumed by the constructor call. If the call is still running (e.g. it timed out), returns the
+     * resources consumed up until now.
+     * @return The resources consumed by the constructor call, or an empty measurement if it never started.
+     */
+    public ResourceUsage getUsage() {
+        if (usage != null)
+            return usage;
+        if (meter != null)
+            return meter.sample();
+        return new ResourceUsage();
+    }
+
     @Override
     public void run() {
+        meter = ResourceUsage.start();
         try {
             object = constructor.newInstance(initArgs);
         } catch (InvocationTargetException e) {
             object = e.getTargetException();
         } catch (Exception e) {
             object = e;
+        } finally {
+            usage = meter.sample();
         }
     }
 }
@@ -0,0 +1,58 @@
+package reflection;
+
+/**
+ * Thrown when a submission's code exceeds its {@link ResourceQuota}. Unchecked, so that it aborts the running test
+ * (and every following one) regardless of how the tester handles the invocation's result.
+ *
+ * @author Afonso Caniço
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    public enum Resource {
+        ALLOCATED_BYTES("allocated memory", "bytes"),
+        CPU_TIME("CPU time", "ns"),
+        THREADS("live threads", "threads");
+
+        private final String description;
+
+        private final String unit;
+
+        Resource(String description, String unit) {
+            this.description = description;
+            this.unit = unit;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+    }
+
+    private final Resource resource;
+
+    private final long limit;
+
+    private final long actual;
+
+    public QuotaExceededException(Resource resource, long limit, long actual) {
+        super("Submission exceeded its quota of " + resource.getDescription() + ": " + actual + " " + resource.getUnit() + " (limit is " + limit + " " + resource.getUnit() + ")");
+        this.resource = resource;
+        this.limit = limit;
+        this.actual = actual;
+    }
+
+    public Resource getResource() {
+        return resource;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getActual() {
+        return actual;
+    }
+}
@@ -7,6 +7,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 import static extensions.Extensions.joinToString;
 
@@ -19,6 +20,10 @@ public class Reflector {
 
     private static final long TIMEOUT_MILLISECONDS = 5000;
 
+    static final long CALLBACK_TIMEOUT_MILLISECONDS = 1000; // Callbacks like equals or toString should be quick
+
+    private static final ThreadLocal<Boolean> GUARDED = ThreadLocal.withInitial(() -> false);
+
     protected static class None {
         private None() throws IllegalAccessException {
             throw new IllegalAccessException("No None instances for you!");
@@ -27,7 +32,38 @@ public class Reflector {
 
     protected static None NONE;
 
-    private static final ExecutorService HANDLER = Executors.newCachedThreadPool();
+    /**
+     * How student code is invoked.
+     */
+    public enum InvocationMode {
+        /**
+         * On a separate thread, waiting at most the timeout for it. Code that never returns is abandoned, which is
+         * the safest choice.
+         */
+        HANDOFF,
+        /**
+         * On the calling thread, which is interrupted by the {@link Watchdog} if it overruns the timeout. Saves the
+         * thread switch of each invocation, but code that ignores interrupts (e.g. a busy infinite loop) is never
+         * stopped, so the submission's own timeout must be relied on instead.
+         */
+        SAME_THREAD
+    }
+
+    private static final long QUOTA_POLL_MILLISECONDS = 20;
+
+    private ThreadGroup studentThreads;
+
+    private ThreadPoolExecutor handler; // Per instance, so threads created by student code can be traced back to it
+
+    private ResourceQuota quota = ResourceQuota.UNLIMITED;
+
+    private InvocationMode mode = InvocationMode.HANDOFF;
+
+    private final ResourceUsage consumed = new ResourceUsage();
+
+    private final List<Supplier<ResourceUsage>> overrunning = new CopyOnWriteArrayList<>(); // Timed out, but still running
+
+    private volatile QuotaExceededException quotaExceeded = null;
 
     private static final Map<Class<?>, Class<?>> PRIMITIVE_WRAPPERS = new HashMap<>();
 
@@ -50,14 +86,31 @@ public class Reflector {
      * @return The return value of the method invocation, as a general Java object.
      */
     protected Object getInvocationResult(Method method, Object object, Object... args) throws TimeoutException, InterruptedException, ExecutionException {
+        return getInvocationResult(new ResourceUsage(), method, object, args);
+    }
+
+    /**
+     * Invokes a method on a given calling instance, returning the result (or any thrown exception), and accumulates
+     * the resources consumed by the invocation (even if it times out or throws).
+     * @param usage Accumulator for the resources consumed by the invocation.
+     * @param method The method to invoke.
+     * @param object The object to invoke the method on.
+     * @param args The arguments to pass to the method call.
+     * @return The return value of the method invocation, as a general Java object.
+     */
+    protected Object getInvocationResult(ResourceUsage usage, Method method, Object object, Object... args) throws TimeoutException, InterruptedException, ExecutionException {
+        checkQuota();
         method.setAccessible(true); // Can access non-public methods through Reflection magic
-        MethodInvocationHandler handler = new MethodInvocationHandler(method, object, args);
-        Future<?> future = HANDLER.submit(handler);
+        MethodInvocationHandler invocation = new MethodInvocationHandler(method, object, args);
 
         // Blocks current class until timed out or result available
-        future.get(TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
+        try {
+            run(invocation, invocation::getUsage, TIMEOUT_MILLISECONDS);
+        } finally {
+            usage.add(invocation.getUsage());
+        }
 
-        return handler.getResult();
+        return invocation.getResult();
     }
 
     /**
@@ -67,11 +120,246 @@ public class Reflector {
      * @return Object instance.
      */
     protected Object getInstance(Constructor<?> constructor, Object... initArgs) throws TimeoutException, InterruptedException, ExecutionException {
+        return getInstance(new ResourceUsage(), constructor, initArgs);
+    }
+
+    /**
+     * Invokes an object's constructor, returning the resulting instance (or any thrown exception), and accumulates
+     * the resources consumed by the constructor (even if it times out or throws).
+     * @param usage Accumulator for the resources consumed by the constructor call.
+     * @param constructor Object constructor.
+     * @param initArgs Constructor arguments.
+     * @return Object instance.
+     */
+    protected Object getInstance(ResourceUsage usage, Constructor<?> constructor, Object... initArgs) throws TimeoutException, InterruptedException, ExecutionException {
+        checkQuota();
         constructor.setAccessible(true);
-        ObjectInstantiationHandler handler = new ObjectInstantiationHandler(constructor, initArgs);
-        Future<?> future = HANDLER.submit(handler);
-        future.get(TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
-        return handler.getObject();
+        ObjectInstantiationHandler instantiation = new ObjectInstantiationHandler(constructor, initArgs);
+        try {
+            run(instantiation, instantiation::getUsage, TIMEOUT_MILLISECONDS);
+        } finally {
+            usage.add(instantiation.getUsage());
+        }
+        return instantiation.getObject();
+    }
+
+    /**
+     * Runs a task that calls student code any number of times, returning its result (or any thrown exception), and
+     * accumulates the resources consumed by the task (even if it times out or throws). The whole task is handed to
+     * another thread at once, so the timeout and quota apply to the task as a whole rather than to each call.
+     * @param usage Accumulator for the resources consumed by the task.
+     * @param task The task, which should invoke student code directly (i.e. not through this instance).
+     * @return The result of the task.
+     */
+    protected <V> V getTaskResult(ResourceUsage usage, Callable<V> task) throws TimeoutException, InterruptedException, ExecutionException {
+        checkQuota();
+        TaskInvocationHandler<V> invocation = new TaskInvocationHandler<>(task);
+        try {
+            run(invocation, invocation::getUsage, TIMEOUT_MILLISECONDS);
+        } finally {
+            usage.add(invocation.getUsage());
+        }
+        return invocation.getResult();
+    }
+
+    /**
+     * Runs a callback to student code made by the evaluator itself (e.g. <code>equals</code> or <code>toString</code>
+     * on a result), like {@link #getTaskResult(ResourceUsage, Callable)} but with a shorter timeout. See also:
+     * {@link Callbacks}.
+     */
+    <V> V getCallbackResult(ResourceUsage usage, Callable<V> callback) throws TimeoutException, InterruptedException, ExecutionException {
+        checkQuota();
+        TaskInvocationHandler<V> invocation = new TaskInvocationHandler<>(callback);
+        try {
+            run(invocation, invocation::getUsage, CALLBACK_TIMEOUT_MILLISECONDS);
+        } finally {
+            usage.add(invocation.getUsage());
+        }
+        return invocation.getResult();
+    }
+
+    /**
+     * Runs an action, e.g. a test, during which the evaluator's callbacks to student code on the current thread are
+     * guarded by this instance (with its invocation mode and quota). See also: {@link Callbacks}.
+     * @param usage Accumulator for the resources consumed by those callbacks.
+     * @param action The action.
+     */
+    protected void guardCallbacks(ResourceUsage usage, Runnable action) {
+        ScopedValue.where(Callbacks.GUARD, new Callbacks.Guard(this, usage)).run(action);
+    }
+
+    /**
+     * Is the current thread running student code invoked through any instance, i.e. already guarded by its timeout?
+     */
+    static boolean isGuarded() {
+        return GUARDED.get();
+    }
+
+    /**
+     * Sets the limits on the resources consumed by student code invoked through this instance.
+     * @param quota The resource quota.
+     */
+    public void setQuota(ResourceQuota quota) {
+        this.quota = quota == null ? ResourceQuota.UNLIMITED : quota;
+    }
+
+    public ResourceQuota getQuota() {
+        return quota;
+    }
+
+    /**
+     * Sets how student code is invoked through this instance. See also: {@link InvocationMode}.
+     * @param mode The invocation mode. By default, {@link InvocationMode#HANDOFF}.
+     */
+    public void setInvocationMode(InvocationMode mode) {
+        this.mode = mode == null ? InvocationMode.HANDOFF : mode;
+    }
+
+    public InvocationMode getInvocationMode() {
+        return mode;
+    }
+
+    /**
+     * Resources consumed so far by all student code invoked through this instance, including invocations that timed
+     * out and are still running.
+     * @return The cumulative resource usage.
+     */
+    public ResourceUsage getConsumedResources() {
+        ResourceUsage total = new ResourceUsage().add(consumed);
+        for (Supplier<ResourceUsage> running : overrunning)
+            total.add(running.get());
+        return total;
+    }
+
+    /**
+     * Has student code invoked through this instance exceeded its quota? If so, no more invocations are performed.
+     * @return The exception describing the exceeded quota, or null if the quota has been respected.
+     */
+    public QuotaExceededException getQuotaExceeded() {
+        return quotaExceeded;
+    }
+
+    /**
+     * Interrupts any student code still running (e.g. timed out invocations or threads it created) and releases the
+     * threads used to invoke student code. Further invocations will use new threads.
+     */
+    public synchronized void release() {
+        if (handler != null) {
+            handler.shutdownNow();
+            studentThreads.interrupt();
+            handler = null;
+            studentThreads = null;
+        }
+    }
+
+    // Lazily created, and recreated after being released, always together with the thread group
+    private synchronized ExecutorService handler() {
+        if (handler == null) {
+            ThreadGroup group = new ThreadGroup(getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this)));
+            studentThreads = group;
+            handler = (ThreadPoolExecutor) Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(group, task);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return handler;
+    }
+
+    /**
+     * Number of live threads created by student code, i.e. excluding the threads used to invoke it.
+     * @return An estimate of the number of threads created by student code that are still alive.
+     */
+    private synchronized int getStudentThreadCount() {
+        if (handler == null)
+            return 0;
+        return Math.max(0, studentThreads.activeCount() - handler.getPoolSize());
+    }
+
+    /**
+     * Runs an invocation according to the invocation mode, enforcing the timeout and, if limited, the resource quota.
+     * @param invocation The invocation.
+     * @param usage Resources consumed by the invocation so far.
+     * @param timeoutMillis The timeout.
+     */
+    private void run(Runnable invocation, Supplier<ResourceUsage> usage, long timeoutMillis) throws TimeoutException, InterruptedException, ExecutionException {
+        if (mode == InvocationMode.HANDOFF) {
+            await(handler().submit(() -> guarded(invocation)), usage, timeoutMillis);
+            return;
+        }
+        Watchdog.Deadline deadline = Watchdog.watch(timeoutMillis);
+        try {
+            guarded(invocation);
+        } finally {
+            if (!deadline.cancel())
+                throw new TimeoutException(); // Returned once interrupted, so nothing keeps running in the background
+        }
+        consumed.add(usage.get());
+        enforceQuota(getConsumedResources(), null); // Only once it's done, since nothing else watches it meanwhile
+    }
+
+    /**
+     * Runs an invocation on the current thread, marking it as guarded meanwhile. See also: {@link #isGuarded()}.
+     */
+    private static void guarded(Runnable invocation) {
+        boolean outer = GUARDED.get();
+        GUARDED.set(true);
+        try {
+            invocation.run();
+        } finally {
+            GUARDED.set(outer);
+        }
+    }
+
+    /**
+     * Waits for an invocation to complete, enforcing the timeout and, if limited, the resource quota.
+     * @param future The invocation's future.
+     * @param usage Resources consumed by the invocation so far.
+     * @param timeoutMillis The timeout.
+     */
+    private void await(Future<?> future, Supplier<ResourceUsage> usage, long timeoutMillis) throws TimeoutException, InterruptedException, ExecutionException {
+        try {
+            if (quota.isUnlimited())
+                future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            else {
+                // Periodically check whether the running invocation has exceeded the quota
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                while (true) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        throw new TimeoutException();
+                    try {
+                        future.get(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(QUOTA_POLL_MILLISECONDS)), TimeUnit.NANOSECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        enforceQuota(getConsumedResources().add(usage.get()), future);
+                    }
+                }
+            }
+        } catch (TimeoutException e) {
+            overrunning.add(usage); // Still running (and consuming resources) in the background
+            throw e;
+        }
+        consumed.add(usage.get());
+        enforceQuota(getConsumedResources(), future);
+    }
+
+    private void checkQuota() {
+        if (quotaExceeded != null)
+            throw quotaExceeded;
+    }
+
+    private void enforceQuota(ResourceUsage usage, Future<?> future) {
+        if (quota.isUnlimited())
+            return;
+        QuotaExceededException exceeded = quota.check(usage, getStudentThreadCount());
+        if (exceeded != null) {
+            quotaExceeded = exceeded;
+            if (future != null)
+                future.cancel(true);
+            release();
+            throw exceeded;
+        }
     }
 
     /**
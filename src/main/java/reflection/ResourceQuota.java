@@ -0,0 +1,88 @@
+package reflection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on the resources a single submission's code may consume. Enforced by {@link Reflector} when invoking
+ * student code: a submission that exceeds its quota is aborted with a {@link QuotaExceededException}.
+ * <p>
+ * Quotas are immutable; use the <code>with</code> methods to derive new ones from {@link ResourceQuota#UNLIMITED}.
+ * <p>
+ * Allocation and CPU time are only metered on the threads that invoke student code. Threads started by student code
+ * itself are not metered; only how many of them are alive is limited (see {@link #withThreads(int)}).
+ *
+ * @author Afonso Caniço
+ */
+public class ResourceQuota {
+
+    public static final ResourceQuota UNLIMITED = new ResourceQuota(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final long allocatedBytes;
+
+    private final long cpuTime;
+
+    private final int threads;
+
+    private ResourceQuota(long allocatedBytes, long cpuTime, int threads) {
+        this.allocatedBytes = allocatedBytes;
+        this.cpuTime = cpuTime;
+        this.threads = threads;
+    }
+
+    /**
+     * @param bytes Maximum number of bytes the submission may allocate, across all invocations.
+     * @return A copy of this quota with the given allocation limit.
+     */
+    public ResourceQuota withAllocatedBytes(long bytes) {
+        return new ResourceQuota(bytes, cpuTime, threads);
+    }
+
+    /**
+     * @param time Maximum cumulative CPU time the submission may consume, across all invocations.
+     * @param unit The time unit.
+     * @return A copy of this quota with the given CPU time limit.
+     */
+    public ResourceQuota withCpuTime(long time, TimeUnit unit) {
+        return new ResourceQuota(allocatedBytes, unit.toNanos(time), threads);
+    }
+
+    /**
+     * @param threads Maximum number of live threads the submission's code may have created at any time.
+     * @return A copy of this quota with the given thread limit.
+     */
+    public ResourceQuota withThreads(int threads) {
+        return new ResourceQuota(allocatedBytes, cpuTime, threads);
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isUnlimited() {
+        return allocatedBytes == Long.MAX_VALUE && cpuTime == Long.MAX_VALUE && threads == Integer.MAX_VALUE;
+    }
+
+    /**
+     * Checks a measurement against this quota.
+     * @param usage Resources consumed so far.
+     * @param threads Number of live threads created by student code.
+     * @return The exception describing the first exceeded limit, or null if the quota is respected.
+     */
+    QuotaExceededException check(ResourceUsage usage, int threads) {
+        if (usage.getAllocatedBytes() > allocatedBytes)
+            return new QuotaExceededException(QuotaExceededException.Resource.ALLOCATED_BYTES, allocatedBytes, usage.getAllocatedBytes());
+        if (usage.getCpuTime() > cpuTime)
+            return new QuotaExceededException(QuotaExceededException.Resource.CPU_TIME, cpuTime, usage.getCpuTime());
+        if (threads > this.threads)
+            return new QuotaExceededException(QuotaExceededException.Resource.THREADS, this.threads, threads);
+        return null;
+    }
+}
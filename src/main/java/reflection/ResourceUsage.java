@@ -0,0 +1,159 @@
+package reflection;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated and CPU time consumed by one or more invocations of student code.
+ * <p>
+ * Measurements come from {@link com.sun.management.ThreadMXBean} and are taken on the thread running the student
+ * code. The first invocation of each method also includes the one-off cost of linking the reflective call, so tight
+ * allocation budgets should be checked over subsequent invocations.
+ *
+ * @author Afonso Caniço
+ */
+public class ResourceUsage {
+
+    private static final com.sun.management.ThreadMXBean THREADS = getThreadMXBean();
+
+    private long allocatedBytes;
+
+    private long cpuTime;
+
+    private int invocations;
+
+    public ResourceUsage() {
+        this(0L, 0L, 0);
+    }
+
+    public ResourceUsage(long allocatedBytes, long cpuTime, int invocations) {
+        this.allocatedBytes = allocatedBytes;
+        this.cpuTime = cpuTime;
+        this.invocations = invocations;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) {
+            if (bean.isThreadAllocatedMemorySupported() && !bean.isThreadAllocatedMemoryEnabled())
+                bean.setThreadAllocatedMemoryEnabled(true);
+            if (bean.isThreadCpuTimeSupported() && !bean.isThreadCpuTimeEnabled())
+                bean.setThreadCpuTimeEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+
+    /**
+     * Is per-thread allocation and CPU time accounting supported by the running JVM?
+     * @return True if measurements are available; False if every measurement will be zero.
+     */
+    public static boolean isSupported() {
+        return THREADS != null && THREADS.isThreadAllocatedMemoryEnabled() && THREADS.isThreadCpuTimeEnabled();
+    }
+
+    /**
+     * Total bytes allocated so far by a thread.
+     * @param thread The thread.
+     * @return The allocated bytes, or 0 if unavailable.
+     */
+    public static long allocatedBytes(Thread thread) {
+        if (THREADS == null || !THREADS.isThreadAllocatedMemoryEnabled())
+            return 0L;
+        if (thread == Thread.currentThread())
+            return Math.max(0L, THREADS.getCurrentThreadAllocatedBytes()); // Cheaper, and doesn't allocate
+        return Math.max(0L, THREADS.getThreadAllocatedBytes(thread.threadId()));
+    }
+
+    /**
+     * Total CPU time consumed so far by a thread.
+     * @param thread The thread.
+     * @return The CPU time in nanoseconds, or 0 if unavailable.
+     */
+    public static long cpuTime(Thread thread) {
+        if (THREADS == null || !THREADS.isThreadCpuTimeEnabled())
+            return 0L;
+        if (thread == Thread.currentThread())
+            return Math.max(0L, THREADS.getCurrentThreadCpuTime());
+        return Math.max(0L, THREADS.getThreadCpuTime(thread.threadId()));
+    }
+
+    /**
+     * Starts measuring the resources used by the current thread.
+     * @return A meter whose baseline is the current thread's usage at this moment.
+     */
+    public static Meter start() {
+        return new Meter(Thread.currentThread());
+    }
+
+    /**
+     * Measures the resources used by a single thread since a baseline. Can be sampled from any thread, e.g. to
+     * measure an invocation that timed out and is still running.
+     */
+    public static class Meter {
+
+        private final Thread thread;
+
+        private final long allocatedBaseline;
+
+        private final long cpuBaseline;
+
+        private Meter(Thread thread) {
+            this.thread = thread;
+            this.allocatedBaseline = allocatedBytes(thread);
+            this.cpuBaseline = cpuTime(thread);
+        }
+
+        public Thread getThread() {
+            return thread;
+        }
+
+        /**
+         * Resources consumed by the measured thread since the meter was started.
+         * @return A new {@link ResourceUsage} representing a single invocation.
+         */
+        public ResourceUsage sample() {
+            // Read before instantiating the result, so the measurement doesn't count itself
+            long allocated = allocatedBytes(thread) - allocatedBaseline;
+            long cpu = cpuTime(thread) - cpuBaseline;
+            return new ResourceUsage(Math.max(0L, allocated), Math.max(0L, cpu), 1);
+        }
+    }
+
+    /**
+     * Accumulates another measurement into this one.
+     * @param other The measurement to add.
+     * @return This instance.
+     */
+    public synchronized ResourceUsage add(ResourceUsage other) {
+        if (other != null) {
+            allocatedBytes += other.allocatedBytes;
+            cpuTime += other.cpuTime;
+            invocations += other.invocations;
+        }
+        return this;
+    }
+
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public synchronized long getCpuTime() {
+        return cpuTime;
+    }
+
+    public synchronized int getInvocations() {
+        return invocations;
+    }
+
+    /**
+     * Average bytes allocated per invocation.
+     * @return The amortised allocation, or 0 if nothing was invoked.
+     */
+    public synchronized double getAmortisedAllocatedBytes() {
+        return invocations == 0 ? 0.0 : (double) allocatedBytes / invocations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d bytes allocated, %.3f ms CPU time over %d invocation(s)", allocatedBytes, cpuTime / 1e6, invocations);
+    }
+}
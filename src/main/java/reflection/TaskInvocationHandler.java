@@ -0,0 +1,61 @@
+package reflection;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Used asynchronously to run a task made of any number of calls to student code, e.g. a whole sequence of
+ * operations, in a single handoff to another thread.
+ *
+ * @author Afonso Caniço
+ */
+public final class TaskInvocationHandler<V> implements Runnable {
+
+    private final Callable<V> task;
+
+    private V result = null;
+
+    private Throwable exception = null;
+
+    private volatile ResourceUsage.Meter meter = null;
+
+    private volatile ResourceUsage usage = null;
+
+    public TaskInvocationHandler(Callable<V> task) {
+        this.task = task;
+    }
+
+    public V getResult() throws ExecutionException {
+        if (exception != null)
+            throw new ExecutionException(exception);
+        return result;
+    }
+
+    /**
+     * Resources consumed by the task. If the task is still running (e.g. it timed out), returns the resources
+     * consumed up until now.
+     * @return The resources consumed by the task, or an empty measurement if it never started.
+     */
+    public ResourceUsage getUsage() {
+        if (usage != null)
+            return usage;
+        if (meter != null)
+            return meter.sample();
+        return new ResourceUsage();
+    }
+
+    @Override
+    public void run() {
+        meter = ResourceUsage.start();
+        try {
+            result = task.call();
+        } catch (InvocationTargetException e) {
+            exception = e.getTargetException();
+        } catch (Throwable e) {
+            exception = e;
+        } finally {
+            usage = meter.sample();
+        }
+    }
+}
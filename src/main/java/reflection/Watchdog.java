@@ -0,0 +1,134 @@
+package reflection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Enforces deadlines on threads running student code on their own thread, i.e. without handing it to another
+ * thread. A single shared thread keeps the deadlines in a hashed timer wheel and interrupts the threads that overrun
+ * theirs. Registering and cancelling a deadline is cheap: no thread switch, and no allocation other than the
+ * deadline itself.
+ * <p>
+ * Deadlines are only precise to a tick (10 milliseconds). Interrupting a thread only stops student code that
+ * checks for interrupts (e.g. by sleeping, waiting or doing I/O); a busy loop is not stopped.
+ *
+ * @author Afonso Caniço
+ */
+public final class Watchdog {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final int SLOTS = 512; // A full turn of the wheel is about 5 seconds
+
+    private static final Watchdog INSTANCE = new Watchdog();
+
+    /**
+     * A thread's deadline. Either cancelled by the thread, once it's done, or expired by the watchdog, not both.
+     */
+    public static final class Deadline {
+
+        private static final int WAITING = 0, CANCELLED = 1, EXPIRED = 2;
+
+        private final Thread thread;
+
+        private long rounds; // Full turns of the wheel left before expiring, only accessed by the watchdog
+
+        private int state = WAITING;
+
+        private Deadline(Thread thread, long rounds) {
+            this.thread = thread;
+            this.rounds = rounds;
+        }
+
+        /**
+         * Stops watching the thread. If the deadline had already expired, clears the interrupt it caused.
+         * @return True if the deadline was met; False if it expired, i.e. the thread overran it.
+         */
+        public synchronized boolean cancel() {
+            if (state == WAITING)
+                state = CANCELLED;
+            else if (state == EXPIRED)
+                Thread.interrupted(); // Only the watched thread cancels its deadline
+            return state == CANCELLED;
+        }
+
+        public synchronized boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private synchronized boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private synchronized void expire() {
+            if (state == WAITING) {
+                state = EXPIRED;
+                thread.interrupt(); // Before the thread can cancel, so the interrupt is always cleared
+            }
+        }
+    }
+
+    private final List<List<Deadline>> wheel = new ArrayList<>(SLOTS);
+
+    private long tick = 0; // Ticks since the watchdog started
+
+    private Thread watchdog;
+
+    private Watchdog() {
+        for (int i = 0; i < SLOTS; i++)
+            wheel.add(new ArrayList<>());
+    }
+
+    /**
+     * Starts watching the current thread.
+     * @param timeoutMillis The time after which the thread is interrupted, unless it cancels the deadline first.
+     * @return The deadline, to be cancelled once the thread is done.
+     */
+    public static Deadline watch(long timeoutMillis) {
+        return INSTANCE.schedule(Thread.currentThread(), timeoutMillis);
+    }
+
+    private synchronized Deadline schedule(Thread thread, long timeoutMillis) {
+        if (watchdog == null) {
+            watchdog = new Thread(this::run, "aedeval-watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+        }
+        long ticks = Math.max(1, (TimeUnit.MILLISECONDS.toNanos(timeoutMillis) + TICK_NANOS - 1) / TICK_NANOS);
+        Deadline deadline = new Deadline(thread, (ticks - 1) / SLOTS);
+        wheel.get((int) ((tick + ticks) % SLOTS)).add(deadline);
+        return deadline;
+    }
+
+    private void run() {
+        long next = System.nanoTime() + TICK_NANOS;
+        while (true) {
+            long remaining = next - System.nanoTime();
+            if (remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+                continue;
+            }
+            next += TICK_NANOS;
+
+            List<Deadline> expired = new ArrayList<>();
+            synchronized (this) {
+                tick++;
+                List<Deadline> slot = wheel.get((int) (tick % SLOTS));
+                slot.removeIf(deadline -> {
+                    if (deadline.isCancelled())
+                        return true;
+                    if (deadline.rounds > 0) {
+                        deadline.rounds--;
+                        return false;
+                    }
+                    expired.add(deadline);
+                    return true;
+                });
+            }
+            for (Deadline deadline : expired) // Outside the wheel's lock, so registering never waits for interrupts
+                deadline.expire();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package report;
 import com.google.gson.*;
 import evaluator.Report;
 import extensions.Console;
+import reflection.ResourceUsage;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
@@ -33,6 +34,11 @@ public class JSONReportWriter {
             JsonObject obj = new JsonObject();
             obj.addProperty("name", entry.getSubmission().getName());
             obj.addProperty("grade", entry.getGrade());
+            obj.addProperty("elapsedMillis", entry.getElapsedMillis());
+
+            ResourceUsage usage = entry.getTotalUsage();
+            obj.addProperty("allocatedBytes", usage.getAllocatedBytes());
+            obj.addProperty("cpuTimeNanos", usage.getCpuTime());
             return obj;
         }
     }
@@ -175,6 +175,8 @@ public class XLSXReportWriter {
 
                 // Collect count of errors per test
                 for (Map.Entry<Test, List<Result>> t : entry.getResults().entrySet()) {
+                    if (t.getKey() == null)
+                        continue; // Submission-wide errors, e.g. timeouts, aren't specific to any test
                     String description = t.getKey().description();
                     int errors = (int) t.getValue().stream().filter(result -> !result.passed()).count();
                     errorsPerTest.put(description, errorsPerTest.getOrDefault(description, 0) + errors);
@@ -0,0 +1,272 @@
+package server;
+
+import com.github.javaparser.StaticJavaParser;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import evaluator.FullEvaluator;
+import evaluator.Journal;
+import evaluator.Report;
+import evaluator.Submission;
+import evaluator.Tester;
+import extensions.Console;
+import extensions.Extensions;
+import extensions.Files;
+import loading.ClassLoader;
+import loading.CompilationException;
+import loading.Source;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a JVM with the evaluator already loaded and warmed up, and evaluates single submissions sent to it over a
+ * local HTTP API. Avoids paying for a cold start (loading POI, JPlag, JavaParser, the compiler and the testers)
+ * every time a single submission is evaluated, e.g. by a self-check service for students.
+ * <p>
+ * Endpoints, bound to the loopback address only:
+ * <ul>
+ *     <li><code>POST /evaluate?assignment=&lt;id&gt;[&amp;name=&lt;name&gt;]</code>, with a zip of the submission's
+ *     files as body. Answers with the submission's report entry in JSON, as written to journals.</li>
+ *     <li><code>GET /assignments</code>. Answers with the ids of the assignments that can be evaluated.</li>
+ * </ul>
+ * Usage: <code>java server.Daemon &lt;port&gt; &lt;id&gt;=&lt;tester class&gt;...</code>
+ *
+ * @author Afonso Caniço
+ */
+public class Daemon {
+
+    private static final Gson GSON = new Gson();
+
+    private static final int MAX_SUBMISSION_BYTES = 16 * 1024 * 1024;
+
+    private static final long MAX_EXTRACTED_BYTES = 64L * 1024 * 1024; // Compressed archives may expand a lot
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final int port;
+
+    private final Map<String, FullEvaluator<?>> assignments = new LinkedHashMap<>();
+
+    private final Map<String, Journal> codecs = new HashMap<>();
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * @param port The local port to listen on.
+     */
+    public Daemon(int port) {
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java server.Daemon <port> <id>=<tester class>...");
+            System.exit(1);
+        }
+        Daemon daemon = new Daemon(Integer.parseInt(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            String[] assignment = args[i].split("=", 2);
+            if (assignment.length != 2) {
+                System.err.println("Invalid assignment (expected <id>=<tester class>): " + args[i]);
+                System.exit(1);
+            }
+            daemon.withAssignment(assignment[0], new FullEvaluator<>(".", assignment[0], loadTester(assignment[1])));
+        }
+        daemon.start();
+    }
+
+    /**
+     * Makes an assignment available for evaluation. Submissions are evaluated with the evaluator's tester, timeout,
+     * quota and test parallelism; its root folder isn't used.
+     * @param id The assignment's id, as given in requests.
+     * @param evaluator The evaluator for the assignment's submissions.
+     */
+    public Daemon withAssignment(String id, FullEvaluator<?> evaluator) {
+        assignments.put(id, evaluator);
+        codecs.put(id, new Journal(null, evaluator.getTester()));
+        return this;
+    }
+
+    /**
+     * Sets how many requests are served at the same time. Defaults to the number of processors.
+     */
+    public Daemon withThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Warms up the evaluator and starts serving requests, in the background.
+     */
+    public void start() throws IOException {
+        warmUp();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/evaluate", this::evaluate);
+        server.createContext("/assignments", this::listAssignments);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("Evaluating submissions of " + Extensions.joinToString(", ", assignments.keySet()) + " at http://localhost:" + server.getAddress().getPort() + "/evaluate");
+    }
+
+    /**
+     * Stops serving requests, waiting at most the given number of seconds for the ongoing ones.
+     */
+    public void stop(int seconds) {
+        if (server != null)
+            server.stop(seconds);
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    /**
+     * Loads and initialises everything the first evaluation would otherwise have to: the testers and their static
+     * initialisers, JavaParser's symbol solver, and the compiler.
+     */
+    private void warmUp() throws IOException {
+        long start = System.currentTimeMillis();
+        for (FullEvaluator<?> evaluator : assignments.values()) {
+            try {
+                Class.forName(evaluator.getTester().getName(), true, evaluator.getTester().getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Could not load tester class " + evaluator.getTester().getName(), e);
+            }
+        }
+
+        File temp = java.nio.file.Files.createTempDirectory("aedeval-").toFile();
+        try {
+            File file = new File(temp, "WarmUp.java");
+            java.nio.file.Files.writeString(file.toPath(), "public class WarmUp { public static void main(String[] args) { System.out.println(args.length); } }");
+            try {
+                Source.clean(file);
+            } catch (CompilationException e) {
+                Console.warning("Could not warm up the source code cleaner: " + e.getMessage());
+            }
+            StaticJavaParser.parse(file);
+
+            JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+            if (javac != null)
+                javac.run(null, OutputStream.nullOutputStream(), OutputStream.nullOutputStream(), "-proc:none", "-d", temp.getPath(), file.getPath());
+        } finally {
+            if (!Files.delete(temp))
+                temp.deleteOnExit();
+        }
+        System.out.println("Warmed up in " + ((System.currentTimeMillis() - start) / 1000.0) + " seconds.");
+    }
+
+    private void evaluate(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, error("Submissions must be sent with POST."));
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String id = query.get("assignment");
+            if (id == null) {
+                respond(exchange, 400, error("Missing assignment id."));
+                return;
+            }
+            FullEvaluator<?> evaluator = assignments.get(id);
+            if (evaluator == null) {
+                respond(exchange, 404, error("Unknown assignment: " + id));
+                return;
+            }
+
+            byte[] archive = exchange.getRequestBody().readNBytes(MAX_SUBMISSION_BYTES + 1);
+            if (archive.length > MAX_SUBMISSION_BYTES) {
+                respond(exchange, 413, error("Submissions can't be larger than " + (MAX_SUBMISSION_BYTES / (1024 * 1024)) + " MiB."));
+                return;
+            }
+
+            File temp = java.nio.file.Files.createTempDirectory("aedeval-").toFile();
+            try {
+                File directory = new File(temp, "submission");
+                try {
+                    Files.unzip(archive, directory, MAX_EXTRACTED_BYTES, MAX_ENTRIES);
+                } catch (IOException e) {
+                    respond(exchange, 400, error("Could not read the submission's zip file: " + e.getMessage()));
+                    return;
+                }
+
+                String name = query.getOrDefault("name", "submission");
+                Submission submission = new Submission(directory, name, name.hashCode(), Tester.getAllRequiredFiles(evaluator.getTester()).stream().toList());
+                Report.Entry entry = evaluator.evaluate(submission);
+                ClassLoader.flush(directory);
+
+                JsonObject json = codecs.get(id).toJson(entry);
+                json.getAsJsonObject("submission").remove("directory"); // Temporary, of no use to the client
+                respond(exchange, 200, json);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, error("The evaluation was interrupted."));
+            } finally {
+                if (!Files.delete(temp))
+                    temp.deleteOnExit();
+            }
+        } catch (IOException | RuntimeException e) {
+            Console.error("Exception thrown when serving " + exchange.getRequestURI() + ": " + e.getMessage());
+        }
+    }
+
+    private void listAssignments(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonObject json = new JsonObject();
+            json.add("assignments", GSON.toJsonTree(assignments.keySet()));
+            respond(exchange, 200, json);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        byte[] bytes = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject json = new JsonObject();
+        json.addProperty("error", message);
+        return json;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null)
+            return parameters;
+        for (String parameter : query.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            if (pair.length == 2)
+                parameters.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8), URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Tester> loadTester(String name) {
+        try {
+            Class<?> type = Class.forName(name);
+            if (Tester.class.isAssignableFrom(type))
+                return (Class<? extends Tester>) type;
+            throw new IllegalArgumentException("Not a tester class: " + name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Could not find tester class: " + name, e);
+        }
+    }
+}
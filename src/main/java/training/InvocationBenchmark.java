@@ -0,0 +1,46 @@
+package training;
+
+import reflection.Reflector;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of invoking student code in each {@link Reflector.InvocationMode}: a trivial method is invoked
+ * many times, after a warm-up, and the average wall time per invocation is printed.
+ * <p>
+ * Usage: <code>java training.InvocationBenchmark [invocations]</code>
+ *
+ * @author Afonso Caniço
+ */
+public class InvocationBenchmark extends Reflector {
+
+    public static int increment(int x) {
+        return x + 1;
+    }
+
+    private double measure(Method method, int invocations) throws Exception {
+        long start = System.nanoTime();
+        int x = 0;
+        for (int i = 0; i < invocations; i++)
+            x = (int) getInvocationResult(method, null, x);
+        long elapsed = System.nanoTime() - start;
+        if (x != invocations)
+            throw new IllegalStateException("Wrong result: " + x);
+        return (double) elapsed / invocations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int invocations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Method increment = InvocationBenchmark.class.getMethod("increment", int.class);
+        for (InvocationMode mode : InvocationMode.values()) {
+            InvocationBenchmark benchmark = new InvocationBenchmark();
+            benchmark.setInvocationMode(mode);
+            benchmark.measure(increment, invocations); // Warm-up
+            double nanos = benchmark.measure(increment, invocations);
+            System.out.printf("%s: %.0f ns per invocation (%d invocations, %.0f ms)%n", mode, nanos, invocations,
+                    nanos * invocations / TimeUnit.MILLISECONDS.toNanos(1));
+            benchmark.release();
+        }
+    }
+}
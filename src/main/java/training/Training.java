@@ -0,0 +1,98 @@
+package training;
+
+import evaluator.FullEvaluator;
+import evaluator.Report;
+import evaluator.Submission;
+import evaluator.Tester;
+import evaluator.annotations.Require;
+import evaluator.annotations.Test;
+import extensions.Files;
+import report.JSONReportWriter;
+import report.XLSXReportWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a small but representative evaluation: a few generated submissions are cleaned, compiled, tested, checked for
+ * plagiarism and written to XLSX and JSON reports. Prints how long it took from the JVM's start to the first result.
+ * <p>
+ * Used as the training run of a JDK AOT cache, so that later runs of the evaluator start with its classes already
+ * loaded and linked, and as a benchmark of startup time with and without the cache:
+ * <pre>
+ * java -XX:AOTCacheOutput=aedeval.aot -cp aedeval.jar training.Training   # Training run, creates the cache
+ * java -XX:AOTCache=aedeval.aot -cp aedeval.jar training.Training         # Benchmark with the cache
+ * java -cp aedeval.jar training.Training                                   # Benchmark without the cache
+ * </pre>
+ * Usage: <code>java training.Training [--no-plagiarism] [--no-reports]</code>
+ *
+ * @author Afonso Caniço
+ */
+public class Training {
+
+    private static final String[] SOURCES = {
+            "public class Sum { public static int sum(int[] a) { int s = 0; for (int x : a) s += x; return s; } }",
+            "public class Sum { public static int sum(int[] a) { int s = 0; for (int i = 0; i < a.length; i++) s += a[i]; return s; } }",
+            "public class Sum { public static int sum(int[] a) { return java.util.Arrays.stream(a).sum(); } public static void main(String[] args) { System.out.println(sum(new int[] { 1 })); } }",
+            "public class Sum { public static int sum(int[] a) { return a.length; } }"
+    };
+
+    public static class SampleTester extends Tester {
+
+        public SampleTester(Submission submission) {
+            super(submission);
+        }
+
+        @Require("Sum.java")
+        @Test(description = "sum", weight = 10)
+        public void testSum() throws Exception {
+            Method sum = findMethod(getClass("Sum.java"), "sum", int[].class);
+            invoke(sum, null, (Object) new int[] { }).assertEquals(0);
+            invoke(sum, null, (Object) new int[] { 1, 2, 3 }).assertEquals(6);
+            invoke(sum, null, (Object) new int[] { -5, 5, 10 }).assertEquals(10);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> options = Arrays.asList(args);
+        boolean plagiarism = !options.contains("--no-plagiarism");
+        boolean reports = !options.contains("--no-reports");
+
+        long started = ManagementFactory.getRuntimeMXBean().getStartTime();
+        AtomicLong firstResult = new AtomicLong();
+
+        File temp = java.nio.file.Files.createTempDirectory("aedeval-training-").toFile();
+        try {
+            File root = new File(temp, "submissions");
+            for (int i = 0; i < SOURCES.length; i++) {
+                File directory = new File(root, "student" + i);
+                java.nio.file.Files.createDirectories(directory.toPath());
+                java.nio.file.Files.writeString(new File(directory, "Sum.java").toPath(), SOURCES[i]);
+            }
+
+            Report report = new FullEvaluator<>(root.getPath(), "Training", SampleTester.class)
+                    .withPlagiarismAnalysis(plagiarism)
+                    .withListener(entry -> firstResult.compareAndSet(0L, System.currentTimeMillis()))
+                    .run(2);
+
+            if (reports) {
+                XLSXReportWriter.write(report, new File(temp, "report").getPath(), 2);
+                JSONReportWriter.write(report, new File(temp, "report").getPath());
+            }
+
+            long finished = System.currentTimeMillis();
+            System.out.println();
+            System.out.println("Startup to first result: " + (firstResult.get() - started) + " ms");
+            System.out.println("Startup to report: " + (finished - started) + " ms");
+        } finally {
+            if (!Files.delete(temp))
+                temp.deleteOnExit();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,140 @@
+package distributed;
+
+import evaluator.Report;
+import evaluator.Submission;
+import evaluator.Tester;
+import evaluator.annotations.Test;
+import evaluator.messages.Result;
+import org.junit.jupiter.api.io.TempDir;
+import reflection.Reflector;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a coordinator and two worker processes on the loopback interface, checking that every submission is evaluated
+ * with the coordinator's settings.
+ *
+ * @author Afonso Caniço
+ */
+class CoordinatorTest {
+
+    public static class SettingsTester extends Tester {
+
+        public SettingsTester(Submission submission) {
+            super(submission);
+        }
+
+        @Test(description = "Invocation mode", weight = 1.0)
+        public void usesInvocationMode() throws ManualFailureException {
+            assertTrue(getInvocationMode() == Reflector.InvocationMode.SAME_THREAD, "Invocation mode: " + getInvocationMode());
+        }
+
+        @Test(description = "Test parallelism", weight = 1.0)
+        public void usesTestParallelism() throws ManualFailureException {
+            assertTrue(getParallelism() == 2, "Test parallelism: " + getParallelism());
+        }
+
+        @Test(description = "Reference implementation", weight = 1.0)
+        public void usesReference() throws ManualFailureException {
+            assertTrue(getOracle() != null && new File(getOracle().getReference(), "Reference.java").isFile(), "No reference implementation");
+        }
+    }
+
+    private static final int SUBMISSIONS = 6;
+
+    private static final String SECRET = Protocol.secret();
+
+    @org.junit.jupiter.api.Test
+    void workersEvaluateWithCoordinatorSettings(@TempDir Path temp) throws Exception {
+        File root = temp.resolve("submissions").toFile();
+        for (int i = 0; i < SUBMISSIONS; i++)
+            assertTrue(new File(root, "student" + i).mkdirs());
+        File reference = temp.resolve("reference").toFile();
+        assertTrue(reference.mkdirs());
+        java.nio.file.Files.writeString(new File(reference, "Reference.java").toPath(), "public class Reference { }");
+
+        int port = freePort();
+        Coordinator<SettingsTester> coordinator = new Coordinator<>(root.getPath(), "Distributed", SettingsTester.class, port)
+                .withSecret(SECRET)
+                .withWorkerTimeout(30, TimeUnit.SECONDS)
+                .withInvocationMode(Reflector.InvocationMode.SAME_THREAD)
+                .withTestParallelism(2)
+                .withReference(reference)
+                .withOracle();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Process> workers = new ArrayList<>();
+        try {
+            Future<Report> run = executor.submit(coordinator::run);
+            awaitListening(port);
+            for (int i = 0; i < 2; i++)
+                workers.add(startWorker(port));
+
+            Report report = run.get(2, TimeUnit.MINUTES);
+            assertEquals(SUBMISSIONS, report.size());
+            for (Report.Entry entry : report) {
+                for (List<Result> results : entry.getResults().values()) {
+                    for (Result result : results)
+                        assertTrue(result.passed(), () -> entry.getSubmission().getName() + ": " + result.getMessage());
+                }
+                assertEquals(3.0, entry.getGrade(), entry.getSubmission().getName());
+            }
+            for (Process worker : workers) {
+                assertTrue(worker.waitFor(1, TimeUnit.MINUTES));
+                assertEquals(0, worker.exitValue());
+            }
+        } finally {
+            executor.shutdownNow();
+            workers.forEach(Process::destroyForcibly);
+        }
+    }
+
+    /**
+     * Starts a worker in a separate JVM with the same classpath and options as this one, evaluating one submission
+     * at a time.
+     */
+    private static Process startWorker(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!option.startsWith("-agentlib") && !option.startsWith("-javaagent") && !option.startsWith("-Xrunjdwp"))
+                command.add(option); // Debuggers and coverage agents can't be shared with another process
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), Worker.class.getName(),
+                InetAddress.getLoopbackAddress().getHostAddress(), String.valueOf(port), "1"));
+        ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+        builder.environment().put("AEDEVAL_SECRET", SECRET);
+        return builder.start();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Waits for the coordinator to listen, so the workers don't give up before it does.
+     */
+    private static void awaitListening(int port) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000L;
+        while (System.currentTimeMillis() < deadline) {
+            try (Socket ignored = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        fail("The coordinator isn't listening on port " + port);
+    }
+}
@@ -0,0 +1,74 @@
+package evaluator;
+
+import evaluator.annotations.Test;
+import loading.Bytecode;
+
+import java.io.IOException;
+import java.util.SortedSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks which tester methods a test's fingerprint covers, in particular those a test calls through a subclass.
+ *
+ * @author Afonso Caniço
+ */
+class FingerprintsTest {
+
+    public static class Intermediate extends Tester {
+
+        public Intermediate(Submission submission) {
+            super(submission);
+        }
+
+        public int helper() {
+            return 1;
+        }
+    }
+
+    public static class Leaf extends Intermediate {
+
+        public Leaf(Submission submission) {
+            super(submission);
+        }
+
+        @Test(weight = 1.0)
+        public void usesInheritedHelper() {
+            helper(); // Compiled as a call to Leaf.helper(), which Leaf inherits
+        }
+
+        @Test(weight = 1.0)
+        public void usesNothing() { }
+    }
+
+    public static class Overriding extends Leaf {
+
+        public Overriding(Submission submission) {
+            super(submission);
+        }
+
+        @Override
+        public int helper() {
+            return 2;
+        }
+    }
+
+    private static final String HELPER = Bytecode.key(Intermediate.class.getName(), "helper", "()I");
+
+    private static final String OVERRIDE = Bytecode.key(Overriding.class.getName(), "helper", "()I");
+
+    @org.junit.jupiter.api.Test
+    void coversHelperInheritedFromIntermediateClass() throws IOException {
+        Fingerprints fingerprints = new Fingerprints(Leaf.class);
+        SortedSet<String> dependencies = fingerprints.getDependencies("usesInheritedHelper");
+        assertTrue(dependencies.contains(HELPER), () -> "Missing " + HELPER + " in " + dependencies);
+        assertFalse(fingerprints.getDependencies("usesNothing").contains(HELPER));
+        assertNotEquals(fingerprints.get("usesInheritedHelper"), fingerprints.get("usesNothing"));
+    }
+
+    @org.junit.jupiter.api.Test
+    void coversOverridesOfInheritedHelper() throws IOException {
+        SortedSet<String> dependencies = new Fingerprints(Overriding.class).getDependencies("usesInheritedHelper");
+        assertTrue(dependencies.contains(OVERRIDE), () -> "Missing " + OVERRIDE + " in " + dependencies);
+    }
+}
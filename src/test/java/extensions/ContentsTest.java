@@ -0,0 +1,123 @@
+package extensions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the comparisons of arrays and collections, in particular the counting and sorting paths of
+ * {@link Contents#permutationDifference(Object, Object)} and the differences they report.
+ *
+ * @author Afonso Caniço
+ */
+class ContentsTest {
+
+    private static final int LARGE = 10_000; // Above the radix sort threshold
+
+    @Test
+    void reportsDuplicatesInBothDirections() {
+        assertEquals(new Contents.Difference(2, 1, 2), Contents.permutationDifference(new int[] { 1, 1, 2 }, new int[] { 1, 2, 2 }));
+        assertEquals(new Contents.Difference(1, 1, 2), Contents.permutationDifference(new int[] { 1, 2, 2 }, new int[] { 1, 1, 2 }));
+        assertEquals(new Contents.Difference(1, 2, 1), Contents.permutationDifference(new int[] { 1, 1, 2 }, new int[] { 1, 2 }));
+        assertEquals(new Contents.Difference(3, 1, 2), Contents.permutationDifference(List.of(3, 1), List.of(1, 3, 3)));
+        assertEquals(new Contents.Difference("a", 2, 1), Contents.permutationDifference(List.of("a", "b", "a"), List.of("b", "a")));
+        assertEquals(new Contents.Difference("b", 1, 2), Contents.permutationDifference(List.of("a", "b"), List.of("b", "b")));
+        assertTrue(Contents.permutation(new Integer[] { 2, 1, 2 }, List.of(2, 2, 1)));
+    }
+
+    @Test
+    void sortsLargeArraysWithNegativeValues() {
+        Random random = new Random(42);
+        int[] expected = new int[LARGE];
+        for (int i = 0; i < expected.length; i++)
+            expected[i] = random.nextInt() | 1; // Spans negative and positive values, but never 0
+        int[] actual = shuffled(expected, random);
+        assertTrue(Contents.permutation(expected, actual));
+
+        int replaced = actual[LARGE / 2];
+        actual[LARGE / 2] = 0; // Smaller than the value it replaces if that one is positive, larger otherwise
+        Contents.Difference difference = Contents.permutationDifference(expected, actual);
+        if (replaced > 0)
+            assertEquals(new Contents.Difference(0, 0, 1), difference);
+        else
+            assertEquals(new Contents.Difference(replaced, count(expected, replaced), count(expected, replaced) - 1), difference);
+
+        actual[LARGE / 2] = Integer.MIN_VALUE;
+        assertEquals(new Contents.Difference(Integer.MIN_VALUE, 0, 1), Contents.permutationDifference(expected, actual));
+    }
+
+    @Test
+    void sortsLongsAcrossTheirWholeRange() {
+        Random random = new Random(7);
+        long[] expected = new long[LARGE];
+        for (int i = 0; i < expected.length; i++)
+            expected[i] = random.nextLong();
+        expected[0] = Long.MIN_VALUE;
+        expected[1] = Long.MAX_VALUE;
+        expected[2] = -1L;
+        expected[3] = 0L;
+        long[] actual = shuffled(expected, random);
+        assertTrue(Contents.permutation(expected, actual));
+
+        long[] extremes = { Long.MIN_VALUE, Long.MAX_VALUE, 0L }; // The range overflows, so they're sorted
+        assertTrue(Contents.permutation(extremes, new long[] { Long.MAX_VALUE, 0L, Long.MIN_VALUE }));
+        assertEquals(new Contents.Difference(Long.MIN_VALUE, 1, 0),
+                Contents.permutationDifference(extremes, new long[] { Long.MAX_VALUE, 0L, Long.MAX_VALUE }));
+
+        for (int i = 0; i < actual.length; i++) {
+            if (actual[i] == Long.MIN_VALUE)
+                actual[i] = Long.MAX_VALUE;
+        }
+        assertEquals(new Contents.Difference(Long.MIN_VALUE, 1, 0), Contents.permutationDifference(expected, actual));
+    }
+
+    @Test
+    void comparesDoublesLikeDoubleEquals() {
+        double nan = Double.longBitsToDouble(0x7ff8000000000001L); // A NaN other than Double.NaN
+        assertTrue(Contents.equal(new double[] { Double.NaN }, new double[] { nan }));
+        assertTrue(Contents.permutation(new double[] { Double.NaN, 1.0 }, new double[] { 1.0, nan }));
+        assertTrue(Contents.contains(new double[] { 1.0, Double.NaN }, Double.NaN));
+
+        assertFalse(Contents.equal(new double[] { 0.0 }, new double[] { -0.0 }));
+        assertFalse(Contents.contains(new double[] { 0.0 }, -0.0));
+        Contents.Difference difference = Contents.permutationDifference(new double[] { 0.0, 1.0 }, List.of(1.0, -0.0));
+        assertNotNull(difference);
+        assertEquals(Double.valueOf(-0.0), difference.element());
+        assertEquals(0, difference.expected());
+        assertEquals(1, difference.actual());
+    }
+
+    @Test
+    void reportsDifferencesOfCharacters() {
+        assertNull(Contents.permutationDifference("abca".toCharArray(), List.of('a', 'a', 'b', 'c')));
+        assertEquals(new Contents.Difference('d', 0, 1), Contents.permutationDifference("abc".toCharArray(), "abd".toCharArray()));
+    }
+
+    private static int[] shuffled(int[] values, Random random) {
+        int[] shuffled = values.clone();
+        for (int i = shuffled.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        return shuffled;
+    }
+
+    private static long[] shuffled(long[] values, Random random) {
+        long[] shuffled = values.clone();
+        for (int i = shuffled.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        return shuffled;
+    }
+
+    private static int count(int[] values, int value) {
+        return (int) Arrays.stream(values).filter(v -> v == value).count();
+    }
+}
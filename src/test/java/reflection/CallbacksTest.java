@@ -0,0 +1,56 @@
+package reflection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks which values may be compared or rendered without guarding the callbacks they make.
+ *
+ * @author Afonso Caniço
+ */
+class CallbacksTest {
+
+    /**
+     * Stands in for a student's list, whose iterator could loop forever.
+     */
+    private static class StudentList extends AbstractList<Integer> {
+
+        @Override
+        public Integer get(int index) {
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return 3;
+        }
+    }
+
+    @Test
+    void jdkContainersOfInertValuesAreInert() {
+        assertTrue(Callbacks.isInert(new ArrayList<>(List.of(1, 2, 3))));
+        assertTrue(Callbacks.isInert(List.of("a", "b")));
+        assertTrue(Callbacks.isInert(new HashMap<>(Map.of(1, List.of(2L)))));
+        assertTrue(Callbacks.isInert(new Object[] { new int[] { 1 }, Set.of('a') }));
+    }
+
+    @Test
+    void wrappersAndViewsAreNotInert() {
+        assertFalse(Callbacks.isInert(new StudentList()));
+        assertFalse(Callbacks.isInert(Collections.unmodifiableList(new StudentList())));
+        assertFalse(Callbacks.isInert(Collections.synchronizedList(new ArrayList<>(List.of(1)))));
+        assertFalse(Callbacks.isInert(new ArrayList<>(List.of(1, 2)).subList(0, 1)));
+        assertFalse(Callbacks.isInert(new HashMap<>(Map.of(1, 2)).keySet()));
+        assertFalse(Callbacks.isInert(List.of(new StudentList())));
+    }
+
+    @Test
+    void containersWithStudentComparatorsAreNotInert() {
+        assertTrue(Callbacks.isInert(new TreeSet<>(List.of(1, 2))));
+        assertFalse(Callbacks.isInert(new TreeSet<Integer>((a, b) -> b - a)));
+        assertFalse(Callbacks.isInert(new TreeMap<Integer, Integer>((a, b) -> b - a)));
+    }
+}